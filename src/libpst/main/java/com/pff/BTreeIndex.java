@@ -0,0 +1,377 @@
+package libpst.main.java.com.pff;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * In memory copy of the leaf entries of both the node (descriptor) and block
+ * (offset) B-Trees.
+ * The entries are held in sorted primitive arrays and looked up with a binary
+ * search, so once built no I/O is needed to resolve an id.
+ */
+class BTreeIndex {
+
+    // node b-tree
+    private int nodeCount = 0;
+    private long[] nodeIds = new long[1024];
+    private long[] nodeDataIds = new long[1024];
+    private long[] nodeLocalDescriptorIds = new long[1024];
+    private int[] nodeParentIds = new int[1024];
+    private int[] nodeItemTypes = new int[1024];
+
+    // block b-tree
+    private int blockCount = 0;
+    private long[] blockIds = new long[1024];
+    private long[] blockOffsets = new long[1024];
+    private int[] blockSizes = new int[1024];
+    private long[] blockRefCounts = new long[1024];
+
+    /**
+     * walk both B-Trees of the file and collect every leaf entry
+     */
+    BTreeIndex(final PSTFileContent in, final int pstFileType, final long nodeBTreeOffset,
+        final long blockBTreeOffset) throws IOException, PSTException {
+        this.loadPage(in, pstFileType, nodeBTreeOffset, BTreePage.PAGE_TYPE_NODE);
+        this.loadPage(in, pstFileType, blockBTreeOffset, BTreePage.PAGE_TYPE_BLOCK);
+        this.sortNodes();
+        this.sortBlocks();
+    }
+
+    /**
+     * walk just the node B-Tree, reading independent branches in parallel.
+     * The pages are read on a pool of our own rather than the common pool,
+     * as the reads block (often on slow storage) and shouldn't hold up or be
+     * held up by other work.
+     * Needs a content handle that supports concurrent positional reads.
+     * 
+     * @param parallelism
+     *            number of pages to read at once, 1 or less to read them one
+     *            after another
+     */
+    BTreeIndex(final PSTFileContent in, final int pstFileType, final long nodeBTreeOffset, final int parallelism)
+        throws IOException, PSTException {
+        if (parallelism <= 1) {
+            this.loadPage(in, pstFileType, nodeBTreeOffset, BTreePage.PAGE_TYPE_NODE);
+        } else {
+            // only built once per file, so the pool only lives for the scan
+            final ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.invoke(new PageScan(this, in, pstFileType, nodeBTreeOffset, BTreePage.PAGE_TYPE_NODE));
+            } catch (final RuntimeException err) {
+                // get the original exception back out of the fork join wrapping
+                Throwable cause = err;
+                while (cause != null) {
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof PSTException) {
+                        throw (PSTException) cause;
+                    }
+                    cause = cause.getCause();
+                }
+                throw err;
+            } finally {
+                pool.shutdown();
+            }
+        }
+        // leaves are added as they come in, so likely out of order
+        this.sortNodes();
+    }
+
+    /**
+     * Reads a page and, for branch pages, all the pages below it as separate
+     * tasks.
+     * Leaf entries go straight into the index, so only the pages being read
+     * are held in memory.
+     */
+    private static class PageScan extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BTreeIndex index;
+        private final PSTFileContent in;
+        private final int pstFileType;
+        private final long offset;
+        private final int pageType;
+
+        PageScan(final BTreeIndex index, final PSTFileContent in, final int pstFileType, final long offset,
+            final int pageType) {
+            this.index = index;
+            this.in = in;
+            this.pstFileType = pstFileType;
+            this.offset = offset;
+            this.pageType = pageType;
+        }
+
+        @Override
+        protected void compute() {
+            final BTreePage page;
+            try {
+                page = new BTreePage(this.in, this.offset, this.pstFileType);
+            } catch (final IOException err) {
+                throw new RuntimeException(err);
+            }
+            if (page.pageType != this.pageType) {
+                throw new RuntimeException(
+                    new PSTException("Unable to read b-tree page at " + this.offset + ", unexpected page type"));
+            }
+
+            if (!page.isBranch()) {
+                synchronized (this.index) {
+                    this.index.addLeafEntries(page, this.pstFileType);
+                }
+                return;
+            }
+
+            final List<PageScan> children = new ArrayList<>(page.numberOfItems);
+            for (int x = 0; x < page.numberOfItems; x++) {
+                children.add(
+                    new PageScan(this.index, this.in, this.pstFileType, page.getChildOffset(x), this.pageType));
+            }
+            ForkJoinTask.invokeAll(children);
+        }
+    }
+
+    /**
+     * read back an index written by writeTo
+     */
+    BTreeIndex(final ByteBuffer buffer) {
+        this.nodeCount = buffer.getInt();
+        this.nodeIds = readLongs(buffer, this.nodeCount);
+        this.nodeDataIds = readLongs(buffer, this.nodeCount);
+        this.nodeLocalDescriptorIds = readLongs(buffer, this.nodeCount);
+        this.nodeParentIds = readInts(buffer, this.nodeCount);
+        this.nodeItemTypes = readInts(buffer, this.nodeCount);
+
+        this.blockCount = buffer.getInt();
+        this.blockIds = readLongs(buffer, this.blockCount);
+        this.blockOffsets = readLongs(buffer, this.blockCount);
+        this.blockSizes = readInts(buffer, this.blockCount);
+        this.blockRefCounts = readLongs(buffer, this.blockCount);
+    }
+
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(this.nodeCount);
+        writeLongs(out, this.nodeIds, this.nodeCount);
+        writeLongs(out, this.nodeDataIds, this.nodeCount);
+        writeLongs(out, this.nodeLocalDescriptorIds, this.nodeCount);
+        writeInts(out, this.nodeParentIds, this.nodeCount);
+        writeInts(out, this.nodeItemTypes, this.nodeCount);
+
+        out.writeInt(this.blockCount);
+        writeLongs(out, this.blockIds, this.blockCount);
+        writeLongs(out, this.blockOffsets, this.blockCount);
+        writeInts(out, this.blockSizes, this.blockCount);
+        writeLongs(out, this.blockRefCounts, this.blockCount);
+    }
+
+    private static long[] readLongs(final ByteBuffer buffer, final int count) {
+        final long[] values = new long[count];
+        buffer.asLongBuffer().get(values);
+        buffer.position(buffer.position() + count * 8);
+        return values;
+    }
+
+    private static int[] readInts(final ByteBuffer buffer, final int count) {
+        final int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static void writeLongs(final DataOutputStream out, final long[] values, final int count)
+        throws IOException {
+        for (int x = 0; x < count; x++) {
+            out.writeLong(values[x]);
+        }
+    }
+
+    private static void writeInts(final DataOutputStream out, final int[] values, final int count)
+        throws IOException {
+        for (int x = 0; x < count; x++) {
+            out.writeInt(values[x]);
+        }
+    }
+
+    private void loadPage(final PSTFileContent in, final int pstFileType, final long offset, final int pageType)
+        throws IOException, PSTException {
+        final BTreePage page = new BTreePage(in, offset, pstFileType);
+        if (page.pageType != pageType) {
+            throw new PSTException("Unable to read b-tree page at " + offset + ", unexpected page type");
+        }
+
+        if (page.isBranch()) {
+            for (int x = 0; x < page.numberOfItems; x++) {
+                this.loadPage(in, pstFileType, page.getChildOffset(x), pageType);
+            }
+        } else {
+            this.addLeafEntries(page, pstFileType);
+        }
+    }
+
+    private void addLeafEntries(final BTreePage page, final int pstFileType) {
+        if (page.pageType == BTreePage.PAGE_TYPE_NODE) {
+            for (int x = 0; x < page.numberOfItems; x++) {
+                this.addNode(new DescriptorIndexNode(page.getEntry(x), pstFileType), page.getKey(x));
+            }
+        } else {
+            for (int x = 0; x < page.numberOfItems; x++) {
+                this.addBlock(new OffsetIndexItem(page.getEntry(x), pstFileType));
+            }
+        }
+    }
+
+    private void addNode(final DescriptorIndexNode node, final long key) {
+        if (this.nodeCount == this.nodeIds.length) {
+            final int newLength = this.nodeCount * 2;
+            this.nodeIds = Arrays.copyOf(this.nodeIds, newLength);
+            this.nodeDataIds = Arrays.copyOf(this.nodeDataIds, newLength);
+            this.nodeLocalDescriptorIds = Arrays.copyOf(this.nodeLocalDescriptorIds, newLength);
+            this.nodeParentIds = Arrays.copyOf(this.nodeParentIds, newLength);
+            this.nodeItemTypes = Arrays.copyOf(this.nodeItemTypes, newLength);
+        }
+        this.nodeIds[this.nodeCount] = key;
+        this.nodeDataIds[this.nodeCount] = node.dataOffsetIndexIdentifier;
+        this.nodeLocalDescriptorIds[this.nodeCount] = node.localDescriptorsOffsetIndexIdentifier;
+        this.nodeParentIds[this.nodeCount] = node.parentDescriptorIndexIdentifier;
+        this.nodeItemTypes[this.nodeCount] = node.itemType;
+        this.nodeCount++;
+    }
+
+    private void addBlock(final OffsetIndexItem item) {
+        if (this.blockCount == this.blockIds.length) {
+            final int newLength = this.blockCount * 2;
+            this.blockIds = Arrays.copyOf(this.blockIds, newLength);
+            this.blockOffsets = Arrays.copyOf(this.blockOffsets, newLength);
+            this.blockSizes = Arrays.copyOf(this.blockSizes, newLength);
+            this.blockRefCounts = Arrays.copyOf(this.blockRefCounts, newLength);
+        }
+        this.blockIds[this.blockCount] = item.indexIdentifier;
+        this.blockOffsets[this.blockCount] = item.fileOffset;
+        this.blockSizes[this.blockCount] = item.size;
+        this.blockRefCounts[this.blockCount] = item.cRef;
+        this.blockCount++;
+    }
+
+    /**
+     * a well formed b-tree gives us the entries in order already,
+     * only shuffle things around if that isn't the case.
+     */
+    private void sortNodes() {
+        if (isSorted(this.nodeIds, this.nodeCount)) {
+            return;
+        }
+        final int[] order = sortOrder(this.nodeIds, this.nodeCount);
+        this.nodeIds = reorder(this.nodeIds, order);
+        this.nodeDataIds = reorder(this.nodeDataIds, order);
+        this.nodeLocalDescriptorIds = reorder(this.nodeLocalDescriptorIds, order);
+        this.nodeParentIds = reorder(this.nodeParentIds, order);
+        this.nodeItemTypes = reorder(this.nodeItemTypes, order);
+    }
+
+    private void sortBlocks() {
+        if (isSorted(this.blockIds, this.blockCount)) {
+            return;
+        }
+        final int[] order = sortOrder(this.blockIds, this.blockCount);
+        this.blockIds = reorder(this.blockIds, order);
+        this.blockOffsets = reorder(this.blockOffsets, order);
+        this.blockSizes = reorder(this.blockSizes, order);
+        this.blockRefCounts = reorder(this.blockRefCounts, order);
+    }
+
+    private static boolean isSorted(final long[] keys, final int count) {
+        for (int x = 1; x < count; x++) {
+            if (keys[x - 1] > keys[x]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int[] sortOrder(final long[] keys, final int count) {
+        final Integer[] order = new Integer[count];
+        for (int x = 0; x < count; x++) {
+            order[x] = x;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        final int[] output = new int[count];
+        for (int x = 0; x < count; x++) {
+            output[x] = order[x];
+        }
+        return output;
+    }
+
+    private static long[] reorder(final long[] values, final int[] order) {
+        final long[] output = new long[order.length];
+        for (int x = 0; x < order.length; x++) {
+            output[x] = values[order[x]];
+        }
+        return output;
+    }
+
+    private static int[] reorder(final int[] values, final int[] order) {
+        final int[] output = new int[order.length];
+        for (int x = 0; x < order.length; x++) {
+            output[x] = values[order[x]];
+        }
+        return output;
+    }
+
+    int getNodeCount() {
+        return this.nodeCount;
+    }
+
+    int getBlockCount() {
+        return this.blockCount;
+    }
+
+    /**
+     * @return the descriptor node at the given position, in key order
+     */
+    DescriptorIndexNode getNodeAt(final int index) {
+        return new DescriptorIndexNode((int) this.nodeIds[index], this.nodeDataIds[index],
+            this.nodeLocalDescriptorIds[index], this.nodeParentIds[index], this.nodeItemTypes[index]);
+    }
+
+    /**
+     * @return all of the descriptor nodes, grouped by parent
+     */
+    PSTDescriptorTree getDescriptorTree() {
+        final int[] descriptorIds = new int[this.nodeCount];
+        for (int x = 0; x < this.nodeCount; x++) {
+            descriptorIds[x] = (int) this.nodeIds[x];
+        }
+        return new PSTDescriptorTree(this.nodeCount, descriptorIds, this.nodeDataIds, this.nodeLocalDescriptorIds,
+            this.nodeParentIds, this.nodeItemTypes);
+    }
+
+    /**
+     * @return the descriptor node, or null if the id isn't in the tree
+     */
+    DescriptorIndexNode getNode(final long identifier) {
+        final int index = Arrays.binarySearch(this.nodeIds, 0, this.nodeCount, identifier);
+        if (index < 0) {
+            return null;
+        }
+        return this.getNodeAt(index);
+    }
+
+    /**
+     * @return the offset item, or null if the id isn't in the tree
+     */
+    OffsetIndexItem getBlock(final long identifier) {
+        final int index = Arrays.binarySearch(this.blockIds, 0, this.blockCount, identifier);
+        if (index < 0) {
+            return null;
+        }
+        return new OffsetIndexItem(this.blockIds[index], this.blockOffsets[index], this.blockSizes[index],
+            this.blockRefCounts[index]);
+    }
+}
@@ -0,0 +1,110 @@
+package libpst.main.java.com.pff;
+
+import java.io.IOException;
+
+/**
+ * A single page of the node (descriptor) or block (offset) B-Tree, read into
+ * memory in one go.
+ * ANSI and Unicode pages are 512 bytes, 2013 Unicode pages are 4K.
+ */
+class BTreePage {
+
+    static final int PAGE_TYPE_BLOCK = 0x80;
+    static final int PAGE_TYPE_NODE = 0x81;
+
+    final long fileOffset;
+    final byte[] data;
+    final int pageType;
+    final int numberOfItems;
+    final int levelsToLeaf;
+
+    private final int pstFileType;
+    private final int entrySize;
+
+    BTreePage(final PSTFileContent in, final long fileOffset, final int pstFileType) throws IOException {
+        this.fileOffset = fileOffset;
+        this.pstFileType = pstFileType;
+
+        int pageSize = 512;
+        if (pstFileType == PSTFile.PST_TYPE_2013_UNICODE) {
+            pageSize = 4096;
+        }
+        this.data = new byte[pageSize];
+        in.readCompletely(fileOffset, this.data);
+
+        // the entry counts follow the entries, the trailer follows the counts
+        int trailerOffset;
+        if (pstFileType == PSTFile.PST_TYPE_ANSI) {
+            this.numberOfItems = this.data[496] & 0xFF;
+            this.levelsToLeaf = this.data[499] & 0xFF;
+            trailerOffset = 500;
+        } else if (pstFileType == PSTFile.PST_TYPE_2013_UNICODE) {
+            this.numberOfItems = (int) PSTObject.convertLittleEndianBytesToLong(this.data, 4056, 4058);
+            this.levelsToLeaf = this.data[4061] & 0xFF;
+            trailerOffset = 0x1000 - 24;
+        } else {
+            this.numberOfItems = this.data[488] & 0xFF;
+            this.levelsToLeaf = this.data[491] & 0xFF;
+            trailerOffset = 496;
+        }
+
+        // both type bytes have to agree
+        if (this.data[trailerOffset] == this.data[trailerOffset + 1]) {
+            this.pageType = this.data[trailerOffset] & 0xFF;
+        } else {
+            this.pageType = -1;
+        }
+
+        final boolean ansi = pstFileType == PSTFile.PST_TYPE_ANSI;
+        if (this.levelsToLeaf > 0) {
+            this.entrySize = ansi ? 12 : 24;
+        } else if (this.pageType == PAGE_TYPE_NODE) {
+            this.entrySize = ansi ? 16 : 32;
+        } else {
+            this.entrySize = ansi ? 12 : 24;
+        }
+    }
+
+    boolean isBranch() {
+        return this.levelsToLeaf > 0;
+    }
+
+    int getEntrySize() {
+        return this.entrySize;
+    }
+
+    int getEntryOffset(final int index) {
+        return index * this.entrySize;
+    }
+
+    /**
+     * @return the key of the entry, node ids are 32 bits even in Unicode files
+     */
+    long getKey(final int index) {
+        final int start = this.getEntryOffset(index);
+        if (this.pstFileType == PSTFile.PST_TYPE_ANSI || (!this.isBranch() && this.pageType == PAGE_TYPE_NODE)) {
+            return PSTObject.convertLittleEndianBytesToLong(this.data, start, start + 4);
+        }
+        return PSTObject.convertLittleEndianBytesToLong(this.data, start, start + 8);
+    }
+
+    /**
+     * @return the file offset of the child page referenced by a branch entry
+     */
+    long getChildOffset(final int index) {
+        final int start = this.getEntryOffset(index);
+        if (this.pstFileType == PSTFile.PST_TYPE_ANSI) {
+            return PSTObject.convertLittleEndianBytesToLong(this.data, start + 8, start + 12);
+        }
+        return PSTObject.convertLittleEndianBytesToLong(this.data, start + 16, start + 24);
+    }
+
+    /**
+     * @return a copy of the raw entry bytes
+     */
+    byte[] getEntry(final int index) {
+        final byte[] entry = new byte[this.entrySize];
+        System.arraycopy(this.data, this.getEntryOffset(index), entry, 0, this.entrySize);
+        return entry;
+    }
+}
@@ -49,6 +49,16 @@ public class DescriptorIndexNode {
 
     // PSTFile.PSTFileBlock dataBlock = null;
 
+    DescriptorIndexNode(final int descriptorIdentifier, final long dataOffsetIndexIdentifier,
+        final long localDescriptorsOffsetIndexIdentifier, final int parentDescriptorIndexIdentifier,
+        final int itemType) {
+        this.descriptorIdentifier = descriptorIdentifier;
+        this.dataOffsetIndexIdentifier = dataOffsetIndexIdentifier;
+        this.localDescriptorsOffsetIndexIdentifier = localDescriptorsOffsetIndexIdentifier;
+        this.parentDescriptorIndexIdentifier = parentDescriptorIndexIdentifier;
+        this.itemType = itemType;
+    }
+
     /**
      * parse the data out into something meaningful
      * 
@@ -44,6 +44,13 @@ class OffsetIndexItem {
     int size;
     long cRef;
 
+    OffsetIndexItem(final long indexIdentifier, final long fileOffset, final int size, final long cRef) {
+        this.indexIdentifier = indexIdentifier;
+        this.fileOffset = fileOffset;
+        this.size = size;
+        this.cRef = cRef;
+    }
+
     OffsetIndexItem(final byte[] data, final int pstFileType) {
         if (pstFileType == PSTFile.PST_TYPE_ANSI) {
             this.indexIdentifier = PSTObject.convertLittleEndianBytesToLong(data, 0, 4);
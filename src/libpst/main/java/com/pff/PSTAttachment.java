@@ -70,14 +70,14 @@ public class PSTAttachment extends PSTObject {
             final PSTTableBCItem item = this.items.get(0x3701);
             if (item.entryValueType == 0x0102) {
                 if (!item.isExternalValueReference) {
-                    in = new PSTNodeInputStream(this.pstFile, item.data);
+                    in = new PSTNodeInputStream(this.pstFile, item.getData());
                 } else {
                     // We are in trouble!
                     throw new PSTException("External reference in getEmbeddedPSTMessage()!\n");
                 }
             } else if (item.entryValueType == 0x000D) {
-                final int descriptorItem = (int) convertLittleEndianBytesToLong(item.data, 0, 4);
-                // PSTObject.printHexFormatted(item.data, true);
+                final int descriptorItem = (int) convertLittleEndianBytesToLong(item.getData(), 0, 4);
+                // PSTObject.printHexFormatted(item.getData(), true);
                 final PSTDescriptorItem descriptorItemNested = this.localDescriptorItems.get(descriptorItem);
                 in = new PSTNodeInputStream(this.pstFile, descriptorItemNested);
                 if (descriptorItemNested.subNodeOffsetIndexIdentifier > 0) {
@@ -129,7 +129,7 @@ public class PSTAttachment extends PSTObject {
             return new PSTNodeInputStream(this.pstFile, descriptorItemNested);
         } else {
             // internal value references are never encrypted
-            return new PSTNodeInputStream(this.pstFile, attachmentDataObject.data, false);
+            return new PSTNodeInputStream(this.pstFile, attachmentDataObject.getData(), false);
         }
 
     }
@@ -146,7 +146,7 @@ public class PSTAttachment extends PSTObject {
             return descriptorItemNested.getDataSize();
         } else {
             // raw attachment data, right there!
-            return attachmentDataObject.data.length;
+            return attachmentDataObject.getDataLength();
         }
 
     }
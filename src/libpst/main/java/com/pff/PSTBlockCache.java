@@ -0,0 +1,118 @@
+package libpst.main.java.com.pff;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently used block payloads of a PST, keyed by block id (BID) and already
+ * decoded, so tables that are opened again and again (folder contents,
+ * recipients, attachments) don't go back to the file each time.
+ * The cache is limited by the total size of the payloads held, least recently
+ * used blocks are evicted first.
+ * Cached arrays are shared, they must never be modified.
+ */
+public class PSTBlockCache {
+
+    public static final long DEFAULT_SIZE = 8L * 1024 * 1024;
+
+    private final LinkedHashMap<Long, byte[]> blocks = new LinkedHashMap<>(16, 0.75f, true);
+    private long maximumSize;
+    private long size = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * @param maximumSize
+     *            maximum number of payload bytes to hold, 0 turns the cache off
+     */
+    public PSTBlockCache(final long maximumSize) {
+        this.maximumSize = Math.max(0, maximumSize);
+    }
+
+    /**
+     * @return the decoded payload of the block, or null if it isn't cached
+     */
+    synchronized byte[] get(final long blockId) {
+        final byte[] data = this.blocks.get(blockId);
+        if (data == null) {
+            this.missCount++;
+        } else {
+            this.hitCount++;
+        }
+        return data;
+    }
+
+    synchronized void put(final long blockId, final byte[] data) {
+        if (data.length > this.maximumSize) {
+            return;
+        }
+        final byte[] previous = this.blocks.put(blockId, data);
+        if (previous != null) {
+            this.size -= previous.length;
+        }
+        this.size += data.length;
+        this.evict();
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Long, byte[]>> iterator = this.blocks.entrySet().iterator();
+        while (this.size > this.maximumSize && iterator.hasNext()) {
+            this.size -= iterator.next().getValue().length;
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    /**
+     * change the size limit, evicting blocks if required
+     */
+    public synchronized void setMaximumSize(final long maximumSize) {
+        this.maximumSize = Math.max(0, maximumSize);
+        this.evict();
+    }
+
+    /**
+     * @return the number of payload bytes currently held
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    public synchronized int getBlockCount() {
+        return this.blocks.size();
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return the fraction of lookups that were found in the cache, 0 if
+     *         there haven't been any
+     */
+    public synchronized double getHitRatio() {
+        final long lookups = this.hitCount + this.missCount;
+        if (lookups == 0) {
+            return 0;
+        }
+        return (double) this.hitCount / lookups;
+    }
+
+    /**
+     * drop all cached blocks and reset the counters
+     */
+    public synchronized void clear() {
+        this.blocks.clear();
+        this.size = 0;
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+}
@@ -48,6 +48,16 @@ public class PSTByteFileContent extends PSTFileContent {
         return targetindex;
     }
 
+    @Override
+    public int read(final long position, final byte[] target, final int offset, final int length) {
+        if (position >= this.content.length) {
+            return -1;
+        }
+        final int bytesToRead = (int) Math.min(length, this.content.length - position);
+        System.arraycopy(this.content, (int) position, target, offset, bytesToRead);
+        return bytesToRead;
+    }
+
     @Override
     public byte readByte() {
         return this.content[this.index++];
@@ -0,0 +1,218 @@
+package libpst.main.java.com.pff;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * File content that keeps recently used pages of another PSTFileContent in
+ * memory.
+ * The file is split into fixed size, aligned pages; B-tree pages near the root
+ * and heap-on-node blocks are read again and again while navigating a PST, so
+ * keeping them around saves a lot of I/O on slow storage.
+ * Pages are evicted least recently used first once the memory limit is
+ * reached.
+ */
+public class PSTCachedFileContent extends PSTFileContent {
+
+    public static final int DEFAULT_PAGE_SIZE = 4096;
+    public static final long DEFAULT_CACHE_SIZE = 32L * 1024 * 1024;
+
+    private final PSTFileContent content;
+    private final int pageSize;
+    private final int pageShift;
+    private final int maxPages;
+    private final LinkedHashMap<Long, byte[]> pages;
+
+    private long position = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    public PSTCachedFileContent(final PSTFileContent content) {
+        this(content, DEFAULT_PAGE_SIZE, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * @param content
+     *            the content to read pages from
+     * @param pageSize
+     *            size of the cached pages, must be a power of two
+     * @param cacheSize
+     *            maximum number of bytes to keep in memory
+     */
+    public PSTCachedFileContent(final PSTFileContent content, final int pageSize, final long cacheSize) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException("Page size must be a power of two: " + pageSize);
+        }
+        this.content = content;
+        this.pageSize = pageSize;
+        this.pageShift = Integer.numberOfTrailingZeros(pageSize);
+        this.maxPages = (int) Math.max(1, Math.min(Integer.MAX_VALUE, cacheSize / pageSize));
+        this.pages = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return this.size() > PSTCachedFileContent.this.maxPages;
+            }
+        };
+    }
+
+    /**
+     * get the content the pages are read from
+     */
+    public PSTFileContent getContent() {
+        return this.content;
+    }
+
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * @return the number of page lookups served from memory
+     */
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    /**
+     * @return the number of page lookups that had to be read from the
+     *         underlying content
+     */
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    /**
+     * @return the number of pages currently held in memory
+     */
+    public synchronized int getCachedPageCount() {
+        return this.pages.size();
+    }
+
+    /**
+     * drop all cached pages and reset the counters
+     */
+    public synchronized void clear() {
+        this.pages.clear();
+        this.hitCount = 0;
+        this.missCount = 0;
+    }
+
+    /**
+     * get a page from the cache, reading it in if required.
+     * The last page of the file may be shorter than the page size, pages
+     * beyond it are empty and never cached.
+     */
+    private byte[] getPage(final long pageNumber) throws IOException {
+        synchronized (this) {
+            final byte[] page = this.pages.get(pageNumber);
+            if (page != null) {
+                this.hitCount++;
+                return page;
+            }
+            this.missCount++;
+        }
+
+        // read outside the lock, worst case two threads load the same page
+        final byte[] buffer = new byte[this.pageSize];
+        int pageLength = 0;
+        boolean endOfFile = false;
+        final long pageStart = pageNumber << this.pageShift;
+        while (pageLength < this.pageSize) {
+            final int read = this.content.read(pageStart + pageLength, buffer, pageLength,
+                this.pageSize - pageLength);
+            if (read <= 0) {
+                endOfFile = read < 0;
+                break;
+            }
+            pageLength += read;
+        }
+        byte[] page = buffer;
+        if (pageLength < this.pageSize) {
+            page = new byte[pageLength];
+            System.arraycopy(buffer, 0, page, 0, pageLength);
+        }
+
+        // only keep short pages if they really are the end of the file, not
+        // reads past it or short reads
+        if (pageLength == this.pageSize || (endOfFile && pageLength > 0)) {
+            synchronized (this) {
+                this.pages.put(pageNumber, page);
+            }
+        }
+        return page;
+    }
+
+    @Override
+    public void seek(final long index) {
+        this.position = index;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return this.position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] page = this.getPage(this.position >>> this.pageShift);
+        final int pageOffset = (int) (this.position & (this.pageSize - 1));
+        if (pageOffset >= page.length) {
+            return -1;
+        }
+        this.position++;
+        return page[pageOffset] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] target) throws IOException {
+        final int bytesRead = this.read(this.position, target, 0, target.length);
+        if (bytesRead > 0) {
+            this.position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public int read(final long position, final byte[] target, final int offset, final int length)
+        throws IOException {
+        int done = 0;
+        while (done < length) {
+            final long current = position + done;
+            final byte[] page = this.getPage(current >>> this.pageShift);
+            final int pageOffset = (int) (current & (this.pageSize - 1));
+            if (pageOffset >= page.length) {
+                // end of file
+                break;
+            }
+            final int chunk = Math.min(length - done, page.length - pageOffset);
+            System.arraycopy(page, pageOffset, target, offset + done, chunk);
+            done += chunk;
+        }
+        if (done == 0 && length > 0) {
+            return -1;
+        }
+        return done;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        final int value = this.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return (byte) value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.pages.clear();
+        }
+        this.content.close();
+    }
+
+}
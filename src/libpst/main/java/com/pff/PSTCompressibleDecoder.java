@@ -0,0 +1,53 @@
+package libpst.main.java.com.pff;
+
+/**
+ * Decoder for the compressible encryption type, which is a plain byte for
+ * byte substitution.
+ * The tables are byte arrays so a lookup doesn't need a narrowing cast.
+ */
+final class PSTCompressibleDecoder {
+
+    private static final byte[] DECODE = new byte[256];
+    private static final byte[] ENCODE = new byte[256];
+
+    static {
+        for (int x = 0; x < 256; x++) {
+            DECODE[x] = (byte) PSTObject.compEnc[x];
+            ENCODE[PSTObject.compEnc[x]] = (byte) x;
+        }
+    }
+
+    private PSTCompressibleDecoder() {
+    }
+
+    /**
+     * @return the decoded value of a single (unsigned) byte
+     */
+    static int decode(final int value) {
+        return DECODE[value & 0xFF] & 0xFF;
+    }
+
+    /**
+     * decode part of an array in place
+     */
+    static void decode(final byte[] data, final int offset, final int length) {
+        apply(DECODE, data, offset, length);
+    }
+
+    /**
+     * encode part of an array in place
+     */
+    static void encode(final byte[] data, final int offset, final int length) {
+        apply(ENCODE, data, offset, length);
+    }
+
+    private static void apply(final byte[] table, final byte[] data, final int offset, final int length) {
+        if (offset < 0 || length < 0 || offset + length > data.length) {
+            throw new ArrayIndexOutOfBoundsException("Range " + offset + "+" + length + " outside " + data.length);
+        }
+        final int end = offset + length;
+        for (int x = offset; x < end; x++) {
+            data[x] = table[data[x] & 0xFF];
+        }
+    }
+}
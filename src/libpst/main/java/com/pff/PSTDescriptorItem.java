@@ -77,10 +77,10 @@ class PSTDescriptorItem {
 
             return this.dataBlockOffsets;
         }
-        final Long[] offsets = this.pstFile.readLeaf(this.offsetIndexIdentifier).getBlockOffsets();
+        final long[] offsets = this.pstFile.readLeaf(this.offsetIndexIdentifier).getBlockOffsets();
         final int[] offsetsOut = new int[offsets.length];
         for (int x = 0; x < offsets.length; x++) {
-            offsetsOut[x] = offsets[x].intValue();
+            offsetsOut[x] = (int) offsets[x];
         }
         return offsetsOut;
     }
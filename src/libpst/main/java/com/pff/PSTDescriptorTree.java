@@ -0,0 +1,222 @@
+package libpst.main.java.com.pff;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Every descriptor in the file, grouped by parent.
+ * Rather than a map of lists of DescriptorIndexNodes this is held as a handful
+ * of primitive arrays (compressed sparse row), the children of the parent at
+ * position p are at childStart[p] up to childStart[p + 1].
+ * Parents are sorted by id, children stay in B-Tree order.
+ * DescriptorIndexNode objects are only created when asked for.
+ */
+public class PSTDescriptorTree {
+
+    private final int[] parentIds;
+    private final int[] childStart;
+
+    private final int[] descriptorIds;
+    private final long[] dataOffsetIds;
+    private final long[] localDescriptorsOffsetIds;
+    private final int[] itemTypes;
+
+    /**
+     * Group the descriptors by parent. Descriptors that are their own parent
+     * are left out.
+     */
+    PSTDescriptorTree(final int count, final int[] descriptorIds, final long[] dataOffsetIds,
+        final long[] localDescriptorsOffsetIds, final int[] parentIds, final int[] itemTypes) {
+
+        // work out the distinct parents
+        int numberOfChildren = 0;
+        int[] parents = new int[count];
+        for (int x = 0; x < count; x++) {
+            if (parentIds[x] != descriptorIds[x]) {
+                parents[numberOfChildren++] = parentIds[x];
+            }
+        }
+        Arrays.sort(parents, 0, numberOfChildren);
+        int numberOfParents = 0;
+        for (int x = 0; x < numberOfChildren; x++) {
+            if (numberOfParents == 0 || parents[numberOfParents - 1] != parents[x]) {
+                parents[numberOfParents++] = parents[x];
+            }
+        }
+        parents = Arrays.copyOf(parents, numberOfParents);
+
+        // count the children of each, then drop them into place
+        final int[] starts = new int[numberOfParents + 1];
+        for (int x = 0; x < count; x++) {
+            if (parentIds[x] != descriptorIds[x]) {
+                starts[Arrays.binarySearch(parents, parentIds[x]) + 1]++;
+            }
+        }
+        for (int x = 0; x < numberOfParents; x++) {
+            starts[x + 1] += starts[x];
+        }
+
+        this.parentIds = parents;
+        this.childStart = starts;
+        this.descriptorIds = new int[numberOfChildren];
+        this.dataOffsetIds = new long[numberOfChildren];
+        this.localDescriptorsOffsetIds = new long[numberOfChildren];
+        this.itemTypes = new int[numberOfChildren];
+
+        final int[] next = Arrays.copyOf(starts, numberOfParents);
+        for (int x = 0; x < count; x++) {
+            if (parentIds[x] != descriptorIds[x]) {
+                final int position = next[Arrays.binarySearch(parents, parentIds[x])]++;
+                this.descriptorIds[position] = descriptorIds[x];
+                this.dataOffsetIds[position] = dataOffsetIds[x];
+                this.localDescriptorsOffsetIds[position] = localDescriptorsOffsetIds[x];
+                this.itemTypes[position] = itemTypes[x];
+            }
+        }
+    }
+
+    /**
+     * read back a tree written by writeTo
+     */
+    PSTDescriptorTree(final ByteBuffer buffer) {
+        final int numberOfParents = buffer.getInt();
+        final int numberOfChildren = buffer.getInt();
+        this.parentIds = new int[numberOfParents];
+        buffer.asIntBuffer().get(this.parentIds);
+        buffer.position(buffer.position() + numberOfParents * 4);
+        this.childStart = new int[numberOfParents + 1];
+        buffer.asIntBuffer().get(this.childStart);
+        buffer.position(buffer.position() + (numberOfParents + 1) * 4);
+        this.descriptorIds = new int[numberOfChildren];
+        buffer.asIntBuffer().get(this.descriptorIds);
+        buffer.position(buffer.position() + numberOfChildren * 4);
+        this.dataOffsetIds = new long[numberOfChildren];
+        buffer.asLongBuffer().get(this.dataOffsetIds);
+        buffer.position(buffer.position() + numberOfChildren * 8);
+        this.localDescriptorsOffsetIds = new long[numberOfChildren];
+        buffer.asLongBuffer().get(this.localDescriptorsOffsetIds);
+        buffer.position(buffer.position() + numberOfChildren * 8);
+        this.itemTypes = new int[numberOfChildren];
+        buffer.asIntBuffer().get(this.itemTypes);
+        buffer.position(buffer.position() + numberOfChildren * 4);
+    }
+
+    void writeTo(final DataOutputStream out) throws IOException {
+        out.writeInt(this.parentIds.length);
+        out.writeInt(this.descriptorIds.length);
+        for (final int value : this.parentIds) {
+            out.writeInt(value);
+        }
+        for (final int value : this.childStart) {
+            out.writeInt(value);
+        }
+        for (final int value : this.descriptorIds) {
+            out.writeInt(value);
+        }
+        for (final long value : this.dataOffsetIds) {
+            out.writeLong(value);
+        }
+        for (final long value : this.localDescriptorsOffsetIds) {
+            out.writeLong(value);
+        }
+        for (final int value : this.itemTypes) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * @return the number of descriptors that have children
+     */
+    public int getParentCount() {
+        return this.parentIds.length;
+    }
+
+    /**
+     * @return the id of the parent at the given position, parents are in id
+     *         order
+     */
+    public int getParentId(final int parentIndex) {
+        return this.parentIds[parentIndex];
+    }
+
+    /**
+     * @return the total number of descriptors in the tree
+     */
+    public int size() {
+        return this.descriptorIds.length;
+    }
+
+    public boolean hasChildren(final int parentId) {
+        return Arrays.binarySearch(this.parentIds, parentId) >= 0;
+    }
+
+    public int getChildCount(final int parentId) {
+        final int parentIndex = Arrays.binarySearch(this.parentIds, parentId);
+        if (parentIndex < 0) {
+            return 0;
+        }
+        return this.childStart[parentIndex + 1] - this.childStart[parentIndex];
+    }
+
+    /**
+     * @return the descriptor id of a child
+     */
+    public int getChildDescriptorIdentifier(final int parentId, final int index) {
+        return this.descriptorIds[this.getPosition(parentId, index)];
+    }
+
+    /**
+     * @return the data offset index id of a child
+     */
+    public long getChildDataOffsetIndexIdentifier(final int parentId, final int index) {
+        return this.dataOffsetIds[this.getPosition(parentId, index)];
+    }
+
+    /**
+     * @return the local descriptors (subnode) offset index id of a child
+     */
+    public long getChildLocalDescriptorsOffsetIndexIdentifier(final int parentId, final int index) {
+        return this.localDescriptorsOffsetIds[this.getPosition(parentId, index)];
+    }
+
+    /**
+     * @return the child as a DescriptorIndexNode, a new object every call
+     */
+    public DescriptorIndexNode getChild(final int parentId, final int index) {
+        return this.getNode(this.getPosition(parentId, index), parentId);
+    }
+
+    /**
+     * @return the children of a descriptor, empty if there aren't any
+     */
+    public List<DescriptorIndexNode> getChildren(final int parentId) {
+        final int parentIndex = Arrays.binarySearch(this.parentIds, parentId);
+        if (parentIndex < 0) {
+            return new ArrayList<>();
+        }
+        final List<DescriptorIndexNode> output = new ArrayList<>(
+            this.childStart[parentIndex + 1] - this.childStart[parentIndex]);
+        for (int x = this.childStart[parentIndex]; x < this.childStart[parentIndex + 1]; x++) {
+            output.add(this.getNode(x, parentId));
+        }
+        return output;
+    }
+
+    private int getPosition(final int parentId, final int index) {
+        final int parentIndex = Arrays.binarySearch(this.parentIds, parentId);
+        if (parentIndex < 0 || index < 0
+            || index >= this.childStart[parentIndex + 1] - this.childStart[parentIndex]) {
+            throw new IndexOutOfBoundsException("No child " + index + " for descriptor " + parentId);
+        }
+        return this.childStart[parentIndex] + index;
+    }
+
+    private DescriptorIndexNode getNode(final int position, final int parentId) {
+        return new DescriptorIndexNode(this.descriptorIds[position], this.dataOffsetIds[position],
+            this.localDescriptorsOffsetIds[position], parentId, this.itemTypes[position]);
+    }
+}
@@ -225,44 +225,44 @@ public class PSTDistList extends PSTMessage {
         Object[] out = {};
         if (item != null) {
             int pos = 0;
-            final int count = (int) convertLittleEndianBytesToLong(item.data, pos, pos + 4);
+            final int count = (int) convertLittleEndianBytesToLong(item.getData(), pos, pos + 4);
             out = new Object[count];
             pos += 4;
-            pos = (int) convertLittleEndianBytesToLong(item.data, pos, pos + 4);
+            pos = (int) convertLittleEndianBytesToLong(item.getData(), pos, pos + 4);
 
             for (int x = 0; x < count; x++) {
                 // http://msdn.microsoft.com/en-us/library/ee218661(v=exchg.80).aspx
                 // http://msdn.microsoft.com/en-us/library/ee200559(v=exchg.80).aspx
-                final int flags = (int) convertLittleEndianBytesToLong(item.data, pos, pos + 4);
+                final int flags = (int) convertLittleEndianBytesToLong(item.getData(), pos, pos + 4);
                 pos += 4;
 
                 final byte[] guid = new byte[16];
-                System.arraycopy(item.data, pos, guid, 0, guid.length);
+                System.arraycopy(item.getData(), pos, guid, 0, guid.length);
                 pos += 16;
 
                 if (Arrays.equals(guid, this.wrappedEntryIdUid)) {
                     /* c3 */
-                    final int entryType = item.data[pos] & 0x0F;
-                    final int entryAddressType = item.data[pos] & 0x70 >> 4;
-                    final boolean isOneOffEntryId = (item.data[pos] & 0x80) > 0;
+                    final int entryType = item.getData()[pos] & 0x0F;
+                    final int entryAddressType = item.getData()[pos] & 0x70 >> 4;
+                    final boolean isOneOffEntryId = (item.getData()[pos] & 0x80) > 0;
                     pos++;
-                    final int wrappedflags = (int) convertLittleEndianBytesToLong(item.data, pos, pos + 4);
+                    final int wrappedflags = (int) convertLittleEndianBytesToLong(item.getData(), pos, pos + 4);
                     pos += 4;
 
                     final byte[] guid2 = new byte[16];
-                    System.arraycopy(item.data, pos, guid, 0, guid.length);
+                    System.arraycopy(item.getData(), pos, guid, 0, guid.length);
                     pos += 16;
 
-                    final int descriptorIndex = (int) convertLittleEndianBytesToLong(item.data, pos, pos + 3);
+                    final int descriptorIndex = (int) convertLittleEndianBytesToLong(item.getData(), pos, pos + 3);
                     pos += 3;
 
-                    final byte empty = item.data[pos];
+                    final byte empty = item.getData()[pos];
                     pos++;
 
                     out[x] = detectAndLoadPSTObject(this.pstFile, descriptorIndex);
 
                 } else if (Arrays.equals(guid, this.oneOffEntryIdUid)) {
-                    final OneOffEntry entry = this.parseOneOffEntry(item.data, pos);
+                    final OneOffEntry entry = this.parseOneOffEntry(item.getData(), pos);
                     pos = entry.pos;
                     out[x] = entry;
                 }
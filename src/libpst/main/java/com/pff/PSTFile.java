@@ -37,11 +37,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.LinkedList;
+import java.util.Map;
 import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * PSTFile is the containing class that allows you to access items within a .pst
@@ -106,7 +110,7 @@ public class PSTFile {
     private int encryptionType = 0;
 
     // our all important tree.
-    private LinkedHashMap<Integer, LinkedList<DescriptorIndexNode>> childrenDescriptorTree = null;
+    private PSTDescriptorTree childrenDescriptorTree = null;
 
     private final HashMap<Long, Integer> nameToId = new HashMap<>();
     private final HashMap<String, Integer> stringToId = new HashMap<>();
@@ -118,6 +122,31 @@ public class PSTFile {
 
     private final PSTFileContent in;
 
+    // in memory copy of the b-trees, only there if asked for
+    private volatile BTreeIndex btreeIndex = null;
+
+    // used to inflate multi stream compressed nodes, off unless asked for
+    private volatile ExecutorService inflationExecutor = null;
+
+    // where the b-trees start, from the header
+    private long nodeBTreeOffset = 0;
+    private long blockBTreeOffset = 0;
+
+    // recently used branch pages of the b-trees
+    private static final int BTREE_PAGE_CACHE_SIZE = 64;
+    private final LinkedHashMap<Long, BTreePage> btreePageCache = new LinkedHashMap<Long, BTreePage>(16, 0.75f,
+        true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<Long, BTreePage> eldest) {
+            return this.size() > BTREE_PAGE_CACHE_SIZE;
+        }
+    };
+
+    // recently used (decoded) data blocks
+    private final PSTBlockCache blockCache = new PSTBlockCache(PSTBlockCache.DEFAULT_SIZE);
+
     /**
      * constructor
      * 
@@ -134,11 +163,61 @@ public class PSTFile {
         this(new PSTRAFileContent(file));
     }
 
+    /**
+     * constructor
+     *
+     * @param file
+     * @param useMemoryMapping
+     *            map the file into memory rather than reading it through a
+     *            RandomAccessFile, recommended for large files
+     * @throws FileNotFoundException
+     * @throws PSTException
+     * @throws IOException
+     */
+    public PSTFile(final File file, final boolean useMemoryMapping)
+        throws FileNotFoundException, PSTException, IOException {
+        this(useMemoryMapping ? new PSTMappedFileContent(file) : new PSTRAFileContent(file));
+    }
+
+    /**
+     * constructor
+     *
+     * @param file
+     * @param useMemoryMapping
+     *            map the file into memory rather than reading it through a
+     *            RandomAccessFile, recommended for large files
+     * @param useIndexFile
+     *            keep the B-Trees, name to id map and descriptor tree in a
+     *            sidecar file ([name].pst.idx) next to the PST. If the sidecar
+     *            is there and still matches the PST it is loaded instead of
+     *            working everything out again, otherwise it is (re)written.
+     *            Only worth it for files that are opened again and again
+     *            without being changed.
+     * @throws FileNotFoundException
+     * @throws PSTException
+     * @throws IOException
+     */
+    public PSTFile(final File file, final boolean useMemoryMapping, final boolean useIndexFile)
+        throws FileNotFoundException, PSTException, IOException {
+        this(useMemoryMapping ? new PSTMappedFileContent(file) : new PSTRAFileContent(file),
+            useIndexFile ? file : null);
+    }
+
     public PSTFile(final byte[] bytes) throws FileNotFoundException, PSTException, IOException {
         this(new PSTByteFileContent(bytes));
     }
 
     public PSTFile(final PSTFileContent content) throws FileNotFoundException, PSTException, IOException {
+        this(content, null);
+    }
+
+    /**
+     * @param content
+     * @param indexedFile
+     *            the file being read, if a sidecar index file should be used
+     */
+    private PSTFile(final PSTFileContent content, final File indexedFile)
+        throws FileNotFoundException, PSTException, IOException {
         // attempt to open the file.
         this.in = content;
 
@@ -176,8 +255,21 @@ public class PSTFile {
                 throw new PSTException("Only unencrypted and compressable PST files are supported at this time");
             }
 
-            // build out name to id map.
-            this.processNameToIdMap(this.in);
+            // find the roots of the b-trees
+            if (this.getPSTFileType() == PST_TYPE_ANSI) {
+                this.nodeBTreeOffset = this.extractLEFileOffset(188);
+                this.blockBTreeOffset = this.extractLEFileOffset(196);
+            } else {
+                this.nodeBTreeOffset = this.extractLEFileOffset(224);
+                this.blockBTreeOffset = this.extractLEFileOffset(240);
+            }
+
+            if (indexedFile != null) {
+                this.processIndexFile(indexedFile);
+            } else {
+                // build out name to id map.
+                this.processNameToIdMap(this.in);
+            }
 
         } catch (final IOException err) {
             throw new PSTException("Unable to read PST Sig", err);
@@ -187,6 +279,48 @@ public class PSTFile {
 
     private int pstFileType = 0;
 
+    /**
+     * load everything from the sidecar index file if we can, otherwise work
+     * it out and write a new sidecar
+     * 
+     * @param indexedFile
+     * @throws IOException
+     * @throws PSTException
+     */
+    private void processIndexFile(final File indexedFile) throws IOException, PSTException {
+        final long headerChecksum = PSTIndexFile.getHeaderChecksum(this.in);
+        final PSTIndexFile indexFile = PSTIndexFile.load(indexedFile, this.getPSTFileType(), headerChecksum);
+        if (indexFile != null) {
+            for (int i = 0; i < guidStrings.length; ++i) {
+                this.guidMap.put(UUID.fromString(guidStrings[i]), i);
+            }
+            this.btreeIndex = indexFile.btreeIndex;
+            this.nameToId.putAll(indexFile.nameToId);
+            for (final Map.Entry<Long, Integer> entry : this.nameToId.entrySet()) {
+                // the low 32 bits of the key are the property id
+                idToName.put(entry.getValue(), (long) entry.getKey().intValue());
+            }
+            this.stringToId.putAll(indexFile.stringToId);
+            for (final Map.Entry<String, Integer> entry : this.stringToId.entrySet()) {
+                this.idToString.put(entry.getValue(), entry.getKey());
+            }
+            this.childrenDescriptorTree = indexFile.childrenDescriptorTree;
+            return;
+        }
+
+        this.loadBTreeIndex();
+        this.processNameToIdMap(this.in);
+        this.getChildDescriptorTree();
+        try {
+            PSTIndexFile.write(indexedFile, this.getPSTFileType(), headerChecksum, this.btreeIndex, this.nameToId,
+                this.stringToId, this.childrenDescriptorTree);
+        } catch (final IOException err) {
+            // not being able to write the sidecar (read only media etc.)
+            // shouldn't stop us reading the file
+            System.err.println("Unable to write index file for " + indexedFile + ": " + err.toString());
+        }
+    }
+
     public int getPSTFileType() {
         return this.pstFileType;
     }
@@ -234,7 +368,7 @@ public class PSTFile {
         //nodein.readCompletely(tmp);
         final PSTTableBC bcTable = new PSTTableBC(nodein);
 
-        final HashMap<Integer, PSTTableBCItem> tableItems = (bcTable.getItems());
+        final PSTPropertyMap<PSTTableBCItem> tableItems = (bcTable.getItems());
         // Get the guids
         final PSTTableBCItem guidEntry = tableItems.get(2); // PidTagNameidStreamGuid
         this.guids = this.getData(guidEntry, localDescriptorItems);
@@ -310,8 +444,8 @@ public class PSTFile {
 
     private byte[] getData(final PSTTableItem item, final HashMap<Integer, PSTDescriptorItem> localDescriptorItems)
         throws IOException, PSTException {
-        if (item.data.length != 0) {
-            return item.data;
+        if (item.getDataLength() != 0) {
+            return item.getData();
         }
 
         if (localDescriptorItems == null) {
@@ -464,13 +598,27 @@ public class PSTFile {
      * any)
      */
     public RandomAccessFile getFileHandle() {
-        if (this.in instanceof PSTRAFileContent) {
-            return ((PSTRAFileContent) this.in).getFile();
+        PSTFileContent content = this.in;
+        if (content instanceof PSTCachedFileContent) {
+            content = ((PSTCachedFileContent) content).getContent();
+        }
+        if (content instanceof PSTRAFileContent) {
+            return ((PSTRAFileContent) content).getFile();
+        } else if (content instanceof PSTMappedFileContent) {
+            return ((PSTMappedFileContent) content).getFile();
         } else {
             return null;
         }
     }
 
+    /**
+     * get the cache of decoded data blocks, to change its size or see how
+     * well it is doing
+     */
+    public PSTBlockCache getBlockCache() {
+        return this.blockCache;
+    }
+
     /**
      * get the handle to the file content we are currently accessing
      */
@@ -526,8 +674,7 @@ public class PSTFile {
 
         // we only need the first 8 bytes
         final byte[] data = new byte[8];
-        this.in.seek(offsetItem.fileOffset);
-        this.in.readCompletely(data);
+        this.in.readCompletely(offsetItem.fileOffset, data);
 
         // we are an array, get the sum of the sizes...
         return (int) PSTObject.convertLittleEndianBytesToLong(data, 4, 8);
@@ -549,9 +696,8 @@ public class PSTFile {
     protected long extractLEFileOffset(final long startOffset) throws IOException {
         long offset = 0;
         if (this.getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
-            this.in.seek(startOffset);
             final byte[] temp = new byte[4];
-            this.in.readCompletely(temp);
+            this.in.readCompletely(startOffset, temp);
             offset |= temp[3] & 0xff;
             offset <<= 8;
             offset |= temp[2] & 0xff;
@@ -560,9 +706,8 @@ public class PSTFile {
             offset <<= 8;
             offset |= temp[0] & 0xff;
         } else {
-            this.in.seek(startOffset);
             final byte[] temp = new byte[8];
-            this.in.readCompletely(temp);
+            this.in.readCompletely(startOffset, temp);
             offset = temp[7] & 0xff;
             long tmpLongValue;
             for (int x = 6; x >= 0; x--) {
@@ -589,168 +734,28 @@ public class PSTFile {
     private byte[] findBtreeItem(final PSTFileContent in, final long index, final boolean descTree)
         throws IOException, PSTException {
 
-        long btreeStartOffset;
-        int fileTypeAdjustment;
-        // first find the starting point for the offset index
-        if (this.getPSTFileType() == PST_TYPE_ANSI) {
-            btreeStartOffset = this.extractLEFileOffset(196);
-            if (descTree) {
-                btreeStartOffset = this.extractLEFileOffset(188);
-            }
-        } else {
-            btreeStartOffset = this.extractLEFileOffset(240);
-            if (descTree) {
-                btreeStartOffset = this.extractLEFileOffset(224);
-            }
-        }
+        // first find the starting point for the index
+        long btreeStartOffset = descTree ? this.nodeBTreeOffset : this.blockBTreeOffset;
+        final int pageType = descTree ? BTreePage.PAGE_TYPE_NODE : BTreePage.PAGE_TYPE_BLOCK;
 
         // okay, what we want to do is navigate the tree until you reach the
         // bottom....
-        // try and read the index b-tree
-        byte[] temp = new byte[2];
-        if (this.getPSTFileType() == PST_TYPE_ANSI) {
-            fileTypeAdjustment = 500;
-        } else if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-            fileTypeAdjustment = 0x1000 - 24;
-        } else {
-            fileTypeAdjustment = 496;
-        }
-        in.seek(btreeStartOffset + fileTypeAdjustment);
-        in.readCompletely(temp);
-
-        while ((temp[0] == 0xffffff80 && temp[1] == 0xffffff80 && !descTree)
-            || (temp[0] == 0xffffff81 && temp[1] == 0xffffff81 && descTree)) {
-            // get the rest of the data....
-            byte[] branchNodeItems;
-            if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                branchNodeItems = new byte[496];
-            } else if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-                branchNodeItems = new byte[4056];
-            } else {
-                branchNodeItems = new byte[488];
-            }
-            in.seek(btreeStartOffset);
-            in.readCompletely(branchNodeItems);
-
-            long numberOfItems = 0;
-            if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-                final byte[] numberOfItemsBytes = new byte[2];
-                in.readCompletely(numberOfItemsBytes);
-                numberOfItems = PSTObject.convertLittleEndianBytesToLong(numberOfItemsBytes);
-                in.readCompletely(numberOfItemsBytes);
-                final long maxNumberOfItems = PSTObject.convertLittleEndianBytesToLong(numberOfItemsBytes);
-            } else {
-                numberOfItems = in.read();
-                in.read(); // maxNumberOfItems
-            }
-            final int itemSize = in.read(); // itemSize
-            final int levelsToLeaf = in.read();
-
-            if (levelsToLeaf > 0) {
-                boolean found = false;
-                for (long x = 0; x < numberOfItems; x++) {
-                    if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                        final long indexIdOfFirstChildNode = this.extractLEFileOffset(btreeStartOffset + (x * 12));
-                        if (indexIdOfFirstChildNode > index) {
-                            // get the address for the child first node in this
-                            // group
-                            btreeStartOffset = this.extractLEFileOffset(btreeStartOffset + ((x - 1) * 12) + 8);
-                            in.seek(btreeStartOffset + 500);
-                            in.readCompletely(temp);
-                            found = true;
-                            break;
-                        }
-                    } else {
-                        final long indexIdOfFirstChildNode = this.extractLEFileOffset(btreeStartOffset + (x * 24));
-                        if (indexIdOfFirstChildNode > index) {
-                            // get the address for the child first node in this
-                            // group
-                            btreeStartOffset = this.extractLEFileOffset(btreeStartOffset + ((x - 1) * 24) + 16);
-                            in.seek(btreeStartOffset + fileTypeAdjustment);
-                            in.readCompletely(temp);
-                            found = true;
-                            break;
-                        }
-                    }
-                }
-                if (!found) {
-                    // it must be in the very last branch...
-                    if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                        btreeStartOffset = this.extractLEFileOffset(btreeStartOffset + ((numberOfItems - 1) * 12) + 8);
-                        in.seek(btreeStartOffset + 500);
-                        in.readCompletely(temp);
-                    } else {
-                        btreeStartOffset = this.extractLEFileOffset(btreeStartOffset + ((numberOfItems - 1) * 24) + 16);
-                        in.seek(btreeStartOffset + fileTypeAdjustment);
-                        in.readCompletely(temp);
-                    }
+        BTreePage page = this.getBTreePage(in, btreeStartOffset);
+        while (page.pageType == pageType) {
+            if (page.isBranch()) {
+                // find the last entry that starts at or before our index
+                final int x = this.searchBTreePage(page, index);
+                if (x < 0) {
+                    break;
                 }
+                btreeStartOffset = page.getChildOffset(x);
+                page = this.getBTreePage(in, btreeStartOffset);
             } else {
-                // System.out.println(String.format("At bottom, looking through
-                // %d items", numberOfItems));
                 // we are at the bottom of the tree...
                 // we want to get our file offset!
-                for (long x = 0; x < numberOfItems; x++) {
-
-                    if (this.getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
-                        if (descTree) {
-                            // The 32-bit descriptor index b-tree leaf node item
-                            in.seek(btreeStartOffset + (x * 16));
-                            temp = new byte[4];
-                            in.readCompletely(temp);
-                            if (PSTObject.convertLittleEndianBytesToLong(temp) == index) {
-                                // give me the offset index please!
-                                in.seek(btreeStartOffset + (x * 16));
-                                temp = new byte[16];
-                                in.readCompletely(temp);
-                                return temp;
-                            }
-                        } else {
-                            // The 32-bit (file) offset index item
-                            final long indexIdOfFirstChildNode = this.extractLEFileOffset(btreeStartOffset + (x * 12));
-
-                            if (indexIdOfFirstChildNode == index) {
-                                // we found it!!!! OMG
-                                // System.out.println("item found as item #"+x);
-                                in.seek(btreeStartOffset + (x * 12));
-
-                                temp = new byte[12];
-                                in.readCompletely(temp);
-                                return temp;
-                            }
-                        }
-                    } else {
-                        if (descTree) {
-                            // The 64-bit descriptor index b-tree leaf node item
-                            in.seek(btreeStartOffset + (x * 32));
-
-                            temp = new byte[4];
-                            in.readCompletely(temp);
-                            if (PSTObject.convertLittleEndianBytesToLong(temp) == index) {
-                                // give me the offset index please!
-                                in.seek(btreeStartOffset + (x * 32));
-                                temp = new byte[32];
-                                in.readCompletely(temp);
-                                // System.out.println("item found!!!");
-                                // PSTObject.printHexFormatted(temp, true);
-                                return temp;
-                            }
-                        } else {
-                            // The 64-bit (file) offset index item
-                            final long indexIdOfFirstChildNode = this.extractLEFileOffset(btreeStartOffset + (x * 24));
-
-                            if (indexIdOfFirstChildNode == index) {
-                                // we found it!!!! OMG
-                                // System.out.println("item found as item #"+x +
-                                // " size (should be 24): "+itemSize);
-                                in.seek(btreeStartOffset + (x * 24));
-
-                                temp = new byte[24];
-                                in.readCompletely(temp);
-                                return temp;
-                            }
-                        }
-                    }
+                final int x = this.searchBTreePage(page, index);
+                if (x >= 0 && page.getKey(x) == index) {
+                    return page.getEntry(x);
                 }
                 throw new PSTException("Unable to find " + index + " is desc: " + descTree);
             }
@@ -759,6 +764,46 @@ public class PSTFile {
         throw new PSTException("Unable to find node: " + index + " is desc: " + descTree);
     }
 
+    /**
+     * binary search the entries of a b-tree page
+     * 
+     * @return the last entry with a key less than or equal to the index, -1
+     *         if all the keys are bigger
+     */
+    private int searchBTreePage(final BTreePage page, final long index) {
+        int low = 0;
+        int high = page.numberOfItems - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (page.getKey(mid) <= index) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * get a b-tree page, branch pages are kept in a small cache as every lookup
+     * goes through the top of the trees.
+     */
+    private BTreePage getBTreePage(final PSTFileContent in, final long offset) throws IOException {
+        synchronized (this.btreePageCache) {
+            final BTreePage page = this.btreePageCache.get(offset);
+            if (page != null) {
+                return page;
+            }
+        }
+        final BTreePage page = new BTreePage(in, offset, this.getPSTFileType());
+        if (page.isBranch()) {
+            synchronized (this.btreePageCache) {
+                this.btreePageCache.put(offset, page);
+            }
+        }
+        return page;
+    }
+
     /**
      * navigate the internal descriptor B-Tree and find a specific item
      * 
@@ -769,6 +814,14 @@ public class PSTFile {
      * @throws PSTException
      */
     DescriptorIndexNode getDescriptorIndexNode(final long identifier) throws IOException, PSTException {
+        final BTreeIndex index = this.btreeIndex;
+        if (index != null) {
+            final DescriptorIndexNode node = index.getNode(identifier);
+            if (node == null) {
+                throw new PSTException("Unable to find " + identifier + " is desc: true");
+            }
+            return node;
+        }
         return new DescriptorIndexNode(this.findBtreeItem(this.in, identifier, true), this.getPSTFileType());
     }
 
@@ -782,9 +835,125 @@ public class PSTFile {
      * @throws PSTException
      */
     OffsetIndexItem getOffsetIndexNode(final long identifier) throws IOException, PSTException {
+        final BTreeIndex index = this.btreeIndex;
+        if (index != null) {
+            final OffsetIndexItem item = index.getBlock(identifier);
+            if (item == null) {
+                throw new PSTException("Unable to find " + identifier + " is desc: false");
+            }
+            return item;
+        }
         return new OffsetIndexItem(this.findBtreeItem(this.in, identifier, false), this.getPSTFileType());
     }
 
+    /**
+     * look up a batch of offset index items in one go.
+     * The ids are sorted and resolved in a single ordered pass over the
+     * B-Tree, so every page is visited at most once no matter how many of
+     * the ids live on it.
+     * 
+     * @param identifiers
+     * @return the offset index items, in the same order as the identifiers
+     * @throws IOException
+     * @throws PSTException
+     */
+    OffsetIndexItem[] getOffsetIndexNodes(final long[] identifiers) throws IOException, PSTException {
+        final OffsetIndexItem[] output = new OffsetIndexItem[identifiers.length];
+        final BTreeIndex index = this.btreeIndex;
+        if (index != null) {
+            for (int x = 0; x < identifiers.length; x++) {
+                output[x] = this.getOffsetIndexNode(identifiers[x]);
+            }
+            return output;
+        }
+
+        // sort and remove duplicates
+        long[] sorted = identifiers.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int x = 0; x < sorted.length; x++) {
+            if (count == 0 || sorted[count - 1] != sorted[x]) {
+                sorted[count++] = sorted[x];
+            }
+        }
+        sorted = Arrays.copyOf(sorted, count);
+
+        final OffsetIndexItem[] found = new OffsetIndexItem[count];
+        this.findBtreeItems(this.getBTreePage(this.in, this.blockBTreeOffset), sorted, 0, count, found);
+
+        for (int x = 0; x < identifiers.length; x++) {
+            output[x] = found[Arrays.binarySearch(sorted, identifiers[x])];
+        }
+        return output;
+    }
+
+    /**
+     * Recursive function used by getOffsetIndexNodes, resolves the sorted ids
+     * from start to end against the offset index B-Tree below the page
+     */
+    private void findBtreeItems(final BTreePage page, final long[] sorted, final int start, final int end,
+        final OffsetIndexItem[] found) throws IOException, PSTException {
+        if (page.pageType != BTreePage.PAGE_TYPE_BLOCK) {
+            throw new PSTException("Unable to find node: " + sorted[start] + " is desc: false");
+        }
+
+        if (page.isBranch()) {
+            int x = start;
+            while (x < end) {
+                // everything up to the next key of the page belongs to the same
+                // child
+                final int entry = this.searchBTreePage(page, sorted[x]);
+                if (entry < 0) {
+                    throw new PSTException("Unable to find node: " + sorted[x] + " is desc: false");
+                }
+                int childEnd = end;
+                if (entry + 1 < page.numberOfItems) {
+                    final long nextKey = page.getKey(entry + 1);
+                    childEnd = x + 1;
+                    while (childEnd < end && sorted[childEnd] < nextKey) {
+                        childEnd++;
+                    }
+                }
+                this.findBtreeItems(this.getBTreePage(this.in, page.getChildOffset(entry)), sorted, x, childEnd,
+                    found);
+                x = childEnd;
+            }
+        } else {
+            for (int x = start; x < end; x++) {
+                final int entry = this.searchBTreePage(page, sorted[x]);
+                if (entry < 0 || page.getKey(entry) != sorted[x]) {
+                    throw new PSTException("Unable to find " + sorted[x] + " is desc: false");
+                }
+                found[x] = new OffsetIndexItem(page.getEntry(entry), this.getPSTFileType());
+            }
+        }
+    }
+
+    /**
+     * Read every entry of the descriptor and offset B-Trees into memory.
+     * Once loaded, looking up descriptors and blocks no longer touches the
+     * file, which is a lot faster when working through big folders.
+     * Costs in the region of 40 bytes per descriptor and 30 bytes per block,
+     * call it straight after opening the file.
+     * 
+     * @throws IOException
+     * @throws PSTException
+     */
+    public synchronized void loadBTreeIndex() throws IOException, PSTException {
+        if (this.btreeIndex != null) {
+            return;
+        }
+        this.btreeIndex = new BTreeIndex(this.in, this.getPSTFileType(), this.nodeBTreeOffset,
+            this.blockBTreeOffset);
+    }
+
+    /**
+     * @return true if the B-Trees have been loaded into memory
+     */
+    public boolean isBTreeIndexLoaded() {
+        return this.btreeIndex != null;
+    }
+
     /**
      * parse a PSTDescriptor and get all of its items
      */
@@ -830,128 +999,78 @@ public class PSTFile {
 
     /**
      * Build the children descriptor tree
-     * This goes through the entire descriptor B-Tree and adds every item to the
-     * childrenDescriptorTree.
+     * This goes through the entire descriptor B-Tree and groups every item by
+     * its parent.
      * This is used as fallback when the nodes that list file contents are
      * broken.
      * 
-     * @param in
      * @throws IOException
      * @throws PSTException
      */
-    LinkedHashMap<Integer, LinkedList<DescriptorIndexNode>> getChildDescriptorTree() throws IOException, PSTException {
+    public PSTDescriptorTree getChildDescriptorTree() throws IOException, PSTException {
+        return this.getChildDescriptorTree(1);
+    }
+
+    /**
+     * Build the children descriptor tree, reading independent branches of the
+     * descriptor B-Tree in parallel.
+     * Worth it when the file is on storage with high latency, such as a SAN or
+     * network share.
+     * 
+     * @param parallelism
+     *            number of B-Tree pages to read at once, 1 or less to read
+     *            them one after another
+     * @throws IOException
+     * @throws PSTException
+     */
+    public synchronized PSTDescriptorTree getChildDescriptorTree(final int parallelism)
+        throws IOException, PSTException {
         if (this.childrenDescriptorTree == null) {
-            long btreeStartOffset = 0;
-            if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                btreeStartOffset = this.extractLEFileOffset(188);
-            } else {
-                btreeStartOffset = this.extractLEFileOffset(224);
+            BTreeIndex index = this.btreeIndex;
+            if (index == null) {
+                // just the descriptors, we don't need the blocks for this
+                index = new BTreeIndex(this.in, this.getPSTFileType(), this.nodeBTreeOffset, parallelism);
             }
-            this.childrenDescriptorTree = new LinkedHashMap<>();
-            this.processDescriptorBTree(btreeStartOffset);
+            this.childrenDescriptorTree = index.getDescriptorTree();
+            this.itemCount = index.getNodeCount();
         }
         return this.childrenDescriptorTree;
     }
 
     /**
-     * Recursive function for building the descriptor tree, used by
-     * buildDescriptorTree
+     * Inflate the blocks of large compressed nodes with a separate zlib stream
+     * per block on a pool of threads, rather than one after the other as the
+     * node is read.
+     * Only worth it when most of the data is going to be read, for instance
+     * when extracting attachments. Small nodes are always inflated as they are
+     * read.
      * 
-     * @param in
-     * @param btreeStartOffset
-     * @throws IOException
-     * @throws PSTException
+     * @param threads
+     *            number of threads to use, 1 or less turns it off
      */
-    private void processDescriptorBTree(final long btreeStartOffset) throws IOException, PSTException {
-        int fileTypeAdjustment;
-
-        byte[] temp = new byte[2];
-        if (this.getPSTFileType() == PST_TYPE_ANSI) {
-            fileTypeAdjustment = 500;
-        } else if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-            fileTypeAdjustment = 0x1000 - 24;
-        } else {
-            fileTypeAdjustment = 496;
+    public synchronized void setParallelInflation(final int threads) {
+        if (this.inflationExecutor != null) {
+            this.inflationExecutor.shutdown();
+            this.inflationExecutor = null;
         }
-        this.in.seek(btreeStartOffset + fileTypeAdjustment);
-        this.in.readCompletely(temp);
-
-        if ((temp[0] == 0xffffff81 && temp[1] == 0xffffff81)) {
-
-            if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                this.in.seek(btreeStartOffset + 496);
-            } else if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-                this.in.seek(btreeStartOffset + 4056);
-            } else {
-                this.in.seek(btreeStartOffset + 488);
-            }
-
-            long numberOfItems = 0;
-            if (this.getPSTFileType() == PST_TYPE_2013_UNICODE) {
-                final byte[] numberOfItemsBytes = new byte[2];
-                this.in.readCompletely(numberOfItemsBytes);
-                numberOfItems = PSTObject.convertLittleEndianBytesToLong(numberOfItemsBytes);
-                this.in.readCompletely(numberOfItemsBytes);
-                final long maxNumberOfItems = PSTObject.convertLittleEndianBytesToLong(numberOfItemsBytes);
-            } else {
-                numberOfItems = this.in.read();
-                this.in.read(); // maxNumberOfItems
-            }
-            this.in.read(); // itemSize
-            final int levelsToLeaf = this.in.read();
-
-            if (levelsToLeaf > 0) {
-                for (long x = 0; x < numberOfItems; x++) {
-                    if (this.getPSTFileType() == PST_TYPE_ANSI) {
-                        final long branchNodeItemStartIndex = (btreeStartOffset + (12 * x));
-                        final long nextLevelStartsAt = this.extractLEFileOffset(branchNodeItemStartIndex + 8);
-                        this.processDescriptorBTree(nextLevelStartsAt);
-                    } else {
-                        final long branchNodeItemStartIndex = (btreeStartOffset + (24 * x));
-                        final long nextLevelStartsAt = this.extractLEFileOffset(branchNodeItemStartIndex + 16);
-                        this.processDescriptorBTree(nextLevelStartsAt);
-                    }
-                }
-            } else {
-                for (long x = 0; x < numberOfItems; x++) {
-                    // The 64-bit descriptor index b-tree leaf node item
-                    // give me the offset index please!
-                    if (this.getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
-                        this.in.seek(btreeStartOffset + (x * 16));
-                        temp = new byte[16];
-                        this.in.readCompletely(temp);
-                    } else {
-                        this.in.seek(btreeStartOffset + (x * 32));
-                        temp = new byte[32];
-                        this.in.readCompletely(temp);
-                    }
-
-                    final DescriptorIndexNode tempNode = new DescriptorIndexNode(temp, this.getPSTFileType());
-
-                    // we don't want to be children of ourselves...
-                    if (tempNode.parentDescriptorIndexIdentifier == tempNode.descriptorIdentifier) {
-                        // skip!
-                    } else if (this.childrenDescriptorTree.containsKey(tempNode.parentDescriptorIndexIdentifier)) {
-                        // add this entry to the existing list of children
-                        final LinkedList<DescriptorIndexNode> children = this.childrenDescriptorTree
-                            .get(tempNode.parentDescriptorIndexIdentifier);
-                        children.add(tempNode);
-                    } else {
-                        // create a new entry and add this one to that
-                        final LinkedList<DescriptorIndexNode> children = new LinkedList<>();
-                        children.add(tempNode);
-                        this.childrenDescriptorTree.put(tempNode.parentDescriptorIndexIdentifier, children);
-                    }
-                    this.itemCount++;
+        if (threads > 1) {
+            this.inflationExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    final Thread thread = new Thread(r, "pst-inflate");
+                    thread.setDaemon(true);
+                    return thread;
                 }
-            }
-        } else {
-            PSTObject.printHexFormatted(temp, true);
-            throw new PSTException("Unable to read descriptor node, is not a descriptor");
+            });
         }
     }
 
+    ExecutorService getInflationExecutor() {
+        return this.inflationExecutor;
+    }
+
     public void close() throws IOException {
+        this.setParallelInflation(0);
         this.in.close();
     }
 
@@ -30,6 +30,31 @@ public abstract class PSTFileContent {
         }
     }
 
+    /**
+     * Read from an absolute position without touching the file pointer.
+     * Unlike seek/read this does not depend on shared state, so a single
+     * content handle can be used from several threads at once.
+     *
+     * @return the number of bytes read, or -1 at the end of the file
+     */
+    public abstract int read(long position, byte[] target, int offset, int length) throws IOException;
+
+    public final void readCompletely(final long position, final byte[] target) throws IOException {
+        this.readCompletely(position, target, 0, target.length);
+    }
+
+    public final void readCompletely(final long position, final byte[] target, final int offset, final int length)
+        throws IOException {
+        int done = 0;
+        while (done < length) {
+            final int read = this.read(position + done, target, offset + done, length - done);
+            if (read <= 0) {
+                break;
+            }
+            done += read;
+        }
+    }
+
     public abstract byte readByte() throws IOException;
 
     public abstract void close() throws IOException;
@@ -33,8 +33,8 @@ package libpst.main.java.com.pff; /**
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -89,11 +89,10 @@ public class PSTFolder extends PSTObject {
         final Vector<PSTFolder> output = new Vector<>();
         try {
             this.initSubfoldersTable();
-            final List<HashMap<Integer, PSTTable7CItem>> itemMapSet = this.subfoldersTable.getItems();
-            for (final HashMap<Integer, PSTTable7CItem> itemMap : itemMapSet) {
-                final PSTTable7CItem item = itemMap.get(26610);
+            final PSTTable7C.RowCursor cursor = this.subfoldersTable.getRowCursor();
+            while (cursor.next()) {
                 final PSTFolder folder = (PSTFolder) PSTObject.detectAndLoadPSTObject(this.pstFile,
-                    item.entryValueReference);
+                    cursor.getInt(0x67F2));
                 output.add(folder);
             }
         } catch (final PSTException err) {
@@ -144,6 +143,7 @@ public class PSTFolder extends PSTObject {
     private final LinkedHashSet<DescriptorIndexNode> otherItems = null;
 
     private PSTTable7C emailsTable = null;
+    private PSTTable7C.RowCursor emailsCursor = null;
     private LinkedList<DescriptorIndexNode> fallbackEmailsTable = null;
     private PSTTable7C subfoldersTable = null;
 
@@ -181,23 +181,23 @@ public class PSTFolder extends PSTObject {
             // folderDescriptor.dataBlock.blockOffsets,tmp, 0x67F2);
             this.emailsTable = new PSTTable7C(new PSTNodeInputStream(this.pstFile,
                 this.pstFile.getOffsetIndexNode(folderDescriptor.dataOffsetIndexIdentifier)), tmp, 0x67F2);
+            this.emailsCursor = this.emailsTable.getRowCursor();
         } catch (final Exception err) {
 
             // here we have to attempt to fallback onto the children as listed
             // by the descriptor b-tree
-            final LinkedHashMap<Integer, LinkedList<DescriptorIndexNode>> tree = this.pstFile.getChildDescriptorTree();
+            final PSTDescriptorTree tree = this.pstFile.getChildDescriptorTree();
 
             this.fallbackEmailsTable = new LinkedList<>();
-            final LinkedList<DescriptorIndexNode> allChildren = tree.get(this.getDescriptorNode().descriptorIdentifier);
-
-            if (allChildren != null) {
-                // quickly go through and remove those entries that are not
-                // messages!
-                for (final DescriptorIndexNode node : allChildren) {
-                    if (node != null
-                        && PSTObject.getNodeType(node.descriptorIdentifier) == PSTObject.NID_TYPE_NORMAL_MESSAGE) {
-                        this.fallbackEmailsTable.add(node);
-                    }
+            final int parentId = this.getDescriptorNode().descriptorIdentifier;
+            final int numberOfChildren = tree.getChildCount(parentId);
+
+            // quickly go through and skip those entries that are not
+            // messages!
+            for (int x = 0; x < numberOfChildren; x++) {
+                if (PSTObject.getNodeType(tree.getChildDescriptorIdentifier(parentId, x))
+                    == PSTObject.NID_TYPE_NORMAL_MESSAGE) {
+                    this.fallbackEmailsTable.add(tree.getChild(parentId, x));
                 }
             }
 
@@ -222,18 +222,15 @@ public class PSTFolder extends PSTObject {
 
         final Vector<PSTObject> output = new Vector<>();
         if (this.emailsTable != null) {
-            final List<HashMap<Integer, PSTTable7CItem>> rows = this.emailsTable.getItems(this.currentEmailIndex,
-                numberToReturn);
-
-            for (int x = 0; x < rows.size(); x++) {
-                if (this.currentEmailIndex >= this.getContentCount()) {
+            for (int x = 0; x < numberToReturn; x++) {
+                if (this.currentEmailIndex >= this.getContentCount()
+                    || !this.emailsCursor.moveTo(this.currentEmailIndex)) {
                     // no more!
                     break;
                 }
                 // get the emails from the rows
-                final PSTTable7CItem emailRow = rows.get(x).get(0x67F2);
                 final DescriptorIndexNode childDescriptor = this.pstFile
-                    .getDescriptorIndexNode(emailRow.entryValueReference);
+                    .getDescriptorIndexNode(this.emailsCursor.getInt(0x67F2));
                 final PSTObject child = PSTObject.detectAndLoadPSTObject(this.pstFile, childDescriptor);
                 output.add(child);
                 this.currentEmailIndex++;
@@ -263,18 +260,86 @@ public class PSTFolder extends PSTObject {
             return new LinkedList<>();
         }
         final LinkedList<Integer> output = new LinkedList<>();
-        final List<HashMap<Integer, PSTTable7CItem>> rows = this.emailsTable.getItems();
-        for (final HashMap<Integer, PSTTable7CItem> row : rows) {
+        final PSTTable7C.RowCursor cursor = this.emailsTable.getRowCursor();
+        while (cursor.next()) {
             // get the emails from the rows
             if (this.currentEmailIndex == this.getContentCount()) {
                 // no more!
                 break;
             }
-            final PSTTable7CItem emailRow = row.get(0x67F2);
-            if (emailRow.entryValueReference == 0) {
+            final int rowId = cursor.getInt(0x67F2);
+            if (rowId == 0) {
                 break;
             }
-            output.add(emailRow.entryValueReference);
+            output.add(rowId);
+        }
+        return output;
+    }
+
+    /**
+     * Find the children of this folder that match a filter.
+     * The conditions are checked against the contents table, so children
+     * that don't match are never loaded. Only folders without a usable
+     * contents table need their children loaded to check them.
+     * This doesn't move the getNextChild cursor.
+     * 
+     * @return the descriptor node ids of the matching children, in table
+     *         order; load them with PSTObject.detectAndLoadPSTObject
+     * @throws PSTException
+     * @throws IOException
+     */
+    public LinkedList<Integer> getMatchingChildDescriptorNodes(final PSTMessageFilter filter)
+        throws PSTException, IOException {
+        this.initEmailsTable();
+        final LinkedList<Integer> output = new LinkedList<>();
+        if (this.emailsTable != null) {
+            final PSTTable7C.RowCursor cursor = this.emailsTable.getRowCursor();
+            while (cursor.next()) {
+                if (filter.matches(cursor)) {
+                    output.add(cursor.getInt(0x67F2));
+                }
+            }
+        } else if (this.fallbackEmailsTable != null) {
+            for (final DescriptorIndexNode childDescriptor : this.fallbackEmailsTable) {
+                final PSTObject child = PSTObject.detectAndLoadPSTObject(this.pstFile, childDescriptor);
+                if (filter.matches(child)) {
+                    output.add(childDescriptor.descriptorIdentifier);
+                }
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Get some properties of the children of this folder straight from the
+     * contents table, without loading the children themselves.
+     * Only the columns for the requested properties are read.
+     * 
+     * @param propertyTags
+     *            the property ids wanted, e.g. 0x0037 for the subject
+     * @return one array per child, holding the values in the same order as
+     *         propertyTags. Values the table doesn't have (or only references)
+     *         are null
+     * @throws PSTException
+     * @throws IOException
+     */
+    public List<Object[]> getChildProperties(final int[] propertyTags, final int startAtRecord,
+        final int numberOfRecords) throws PSTException, IOException {
+        this.initEmailsTable();
+        final List<Object[]> output = new ArrayList<>();
+        if (this.emailsTable == null) {
+            return output;
+        }
+        for (final HashMap<Integer, PSTTable7CItem> row : this.emailsTable.getItems(startAtRecord,
+            numberOfRecords, propertyTags)) {
+            final Object[] values = new Object[propertyTags.length];
+            for (int x = 0; x < propertyTags.length; x++) {
+                final PSTTable7CItem item = row.get(propertyTags[x]);
+                if (item != null) {
+                    values[x] = item.getValue();
+                }
+            }
+            output.add(values);
         }
         return output;
     }
@@ -292,16 +357,14 @@ public class PSTFolder extends PSTObject {
         this.initEmailsTable();
 
         if (this.emailsTable != null) {
-            final List<HashMap<Integer, PSTTable7CItem>> rows = this.emailsTable.getItems(this.currentEmailIndex, 1);
-
-            if (this.currentEmailIndex == this.getContentCount()) {
+            if (this.currentEmailIndex == this.getContentCount()
+                || !this.emailsCursor.moveTo(this.currentEmailIndex)) {
                 // no more!
                 return null;
             }
             // get the emails from the rows
-            final PSTTable7CItem emailRow = rows.get(0).get(0x67F2);
             final DescriptorIndexNode childDescriptor = this.pstFile
-                .getDescriptorIndexNode(emailRow.entryValueReference);
+                .getDescriptorIndexNode(this.emailsCursor.getInt(0x67F2));
             final PSTObject child = PSTObject.detectAndLoadPSTObject(this.pstFile, childDescriptor);
             this.currentEmailIndex++;
 
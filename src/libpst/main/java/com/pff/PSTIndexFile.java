@@ -0,0 +1,176 @@
+package libpst.main.java.com.pff;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Sidecar file holding everything PSTFile works out when opening a file and
+ * walking its descriptor tree, so re-opening the same (unchanged) PST is
+ * almost free.
+ * Stored next to the PST as [name].pst.idx and contains the B-Tree entries,
+ * the name to id maps and the parent to children descriptor map.
+ *
+ * The file is thrown away and rebuilt when the size, modification time or
+ * header of the PST no longer match, or the sidecar fails its checksum.
+ */
+class PSTIndexFile {
+
+    private static final int MAGIC = 0x50535449; // PSTI
+    static final int VERSION = 2;
+
+    // covers the whole header, including the b-tree roots
+    private static final int HEADER_CHECK_SIZE = 564;
+
+    BTreeIndex btreeIndex;
+    final HashMap<Long, Integer> nameToId = new HashMap<>();
+    final HashMap<String, Integer> stringToId = new HashMap<>();
+    PSTDescriptorTree childrenDescriptorTree;
+
+    private PSTIndexFile() {
+    }
+
+    static File getIndexFile(final File pstFile) {
+        return new File(pstFile.getPath() + ".idx");
+    }
+
+    /**
+     * @return checksum of the PST header, which changes whenever the file is
+     *         written to
+     */
+    static long getHeaderChecksum(final PSTFileContent in) throws IOException {
+        final byte[] header = new byte[HEADER_CHECK_SIZE];
+        in.readCompletely(0, header);
+        final CRC32 crc = new CRC32();
+        crc.update(header);
+        return crc.getValue();
+    }
+
+    /**
+     * load the sidecar for a PST
+     *
+     * @return the contents, or null if there isn't a usable sidecar
+     */
+    static PSTIndexFile load(final File pstFile, final int pstFileType, final long headerChecksum) {
+        final File indexFile = getIndexFile(pstFile);
+        if (!indexFile.isFile()) {
+            return null;
+        }
+
+        try (RandomAccessFile file = new RandomAccessFile(indexFile, "r")) {
+            final FileChannel channel = file.getChannel();
+            if (channel.size() < 8 || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // check the whole thing made it to disk first
+            final ByteBuffer content = buffer.duplicate();
+            content.limit(content.limit() - 8);
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            if (buffer.getLong(buffer.limit() - 8) != crc.getValue()) {
+                return null;
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            if (buffer.getInt() != pstFileType || buffer.getLong() != pstFile.length()
+                || buffer.getLong() != pstFile.lastModified() || buffer.getLong() != headerChecksum) {
+                return null;
+            }
+
+            final PSTIndexFile output = new PSTIndexFile();
+            output.btreeIndex = new BTreeIndex(buffer);
+
+            int count = buffer.getInt();
+            for (int x = 0; x < count; x++) {
+                final long key = buffer.getLong();
+                output.nameToId.put(key, buffer.getInt());
+            }
+            count = buffer.getInt();
+            for (int x = 0; x < count; x++) {
+                final char[] key = new char[buffer.getInt()];
+                buffer.asCharBuffer().get(key);
+                buffer.position(buffer.position() + key.length * 2);
+                output.stringToId.put(new String(key), buffer.getInt());
+            }
+
+            output.childrenDescriptorTree = new PSTDescriptorTree(buffer);
+            return output;
+        } catch (final IOException err) {
+            // can't read it, we'll just build a new one
+            return null;
+        } catch (final BufferUnderflowException err) {
+            return null;
+        } catch (final IndexOutOfBoundsException err) {
+            return null;
+        }
+    }
+
+    /**
+     * write the sidecar for a PST, replacing any existing one
+     */
+    static void write(final File pstFile, final int pstFileType, final long headerChecksum,
+        final BTreeIndex btreeIndex, final HashMap<Long, Integer> nameToId, final HashMap<String, Integer> stringToId,
+        final PSTDescriptorTree childrenDescriptorTree) throws IOException {
+
+        final File indexFile = getIndexFile(pstFile);
+        final File tempFile = new File(indexFile.getPath() + ".tmp");
+        final CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(
+            new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536), crc))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(pstFileType);
+            out.writeLong(pstFile.length());
+            out.writeLong(pstFile.lastModified());
+            out.writeLong(headerChecksum);
+
+            btreeIndex.writeTo(out);
+
+            out.writeInt(nameToId.size());
+            for (final Map.Entry<Long, Integer> entry : nameToId.entrySet()) {
+                out.writeLong(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+            out.writeInt(stringToId.size());
+            for (final Map.Entry<String, Integer> entry : stringToId.entrySet()) {
+                out.writeInt(entry.getKey().length());
+                out.writeChars(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+
+            childrenDescriptorTree.writeTo(out);
+
+            // the checksum itself isn't part of the checksum
+            out.flush();
+            out.writeLong(crc.getValue());
+        } catch (final IOException err) {
+            tempFile.delete();
+            throw err;
+        }
+
+        // readers either see the old sidecar or the new one, never half of it
+        try {
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        } catch (final IOException err) {
+            tempFile.delete();
+            throw err;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package libpst.main.java.com.pff;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * File content backed by memory mapped windows of the file.
+ * A single MappedByteBuffer is limited to 2GB, so the file is mapped in
+ * segments and reads that straddle a segment boundary are split.
+ * Seeks and reads never hit the operating system once the pages are resident.
+ */
+public class PSTMappedFileContent extends PSTFileContent {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    protected RandomAccessFile file;
+    protected MappedByteBuffer[] segments;
+
+    private final int segmentShift;
+    private final long segmentMask;
+    private final long length;
+    private long position = 0;
+
+    public PSTMappedFileContent(final File file) throws FileNotFoundException, IOException {
+        this(file, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param file
+     * @param segmentSize
+     *            size of each mapped window, must be a power of two
+     */
+    public PSTMappedFileContent(final File file, final int segmentSize) throws FileNotFoundException, IOException {
+        if (segmentSize <= 0 || Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException("Segment size must be a power of two: " + segmentSize);
+        }
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+
+        this.file = new RandomAccessFile(file, "r");
+        final FileChannel channel = this.file.getChannel();
+        this.length = channel.size();
+        final int numberOfSegments = (int) ((this.length + this.segmentMask) >>> this.segmentShift);
+        this.segments = new MappedByteBuffer[numberOfSegments];
+        for (int x = 0; x < numberOfSegments; x++) {
+            final long start = (long) x << this.segmentShift;
+            this.segments[x] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                Math.min(segmentSize, this.length - start));
+        }
+    }
+
+    public RandomAccessFile getFile() {
+        return this.file;
+    }
+
+    public long length() {
+        return this.length;
+    }
+
+    @Override
+    public void seek(final long index) {
+        this.position = index;
+    }
+
+    @Override
+    public long getFilePointer() {
+        return this.position;
+    }
+
+    @Override
+    public int read() {
+        if (this.position >= this.length) {
+            return -1;
+        }
+        final int value = this.segments[(int) (this.position >>> this.segmentShift)]
+            .get((int) (this.position & this.segmentMask)) & 0xFF;
+        this.position++;
+        return value;
+    }
+
+    @Override
+    public int read(final byte[] target) {
+        final int bytesRead = this.read(this.position, target, 0, target.length);
+        if (bytesRead > 0) {
+            this.position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public int read(final long position, final byte[] target, final int offset, final int length) {
+        if (position >= this.length) {
+            return -1;
+        }
+        final int bytesToRead = (int) Math.min(length, this.length - position);
+        int done = 0;
+        while (done < bytesToRead) {
+            final long current = position + done;
+            // work on a duplicate so concurrent readers don't share a buffer position
+            final ByteBuffer segment = this.segments[(int) (current >>> this.segmentShift)].duplicate();
+            final int segmentOffset = (int) (current & this.segmentMask);
+            final int chunk = Math.min(bytesToRead - done, segment.limit() - segmentOffset);
+            segment.position(segmentOffset);
+            segment.get(target, offset + done, chunk);
+            done += chunk;
+        }
+        return bytesToRead;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        final int value = this.read();
+        if (value < 0) {
+            throw new EOFException();
+        }
+        return (byte) value;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // mappings are released when the buffers are garbage collected
+        this.segments = new MappedByteBuffer[0];
+        this.file.close();
+    }
+
+}
@@ -68,11 +68,11 @@ public class PSTMessage extends PSTObject {
         if (this.items.containsKey(0x1009)) {
             // is it a reference?
             final PSTTableBCItem item = this.items.get(0x1009);
-            if (item.data.length > 0) {
-                return (LZFu.decode(item.data));
+            if (item.getDataLength() > 0) {
+                return (LZFu.decode(item.getData()));
             }
             final int ref = item.entryValueReference;
-            final PSTDescriptorItem descItem = this.localDescriptorItems.get(ref);
+            final PSTDescriptorItem descItem = this.getLocalDescriptorItems().get(ref);
             if (descItem != null) {
                 return LZFu.decode(descItem.getData());
             }
@@ -826,9 +826,10 @@ public class PSTMessage extends PSTObject {
     private void processRecipients() {
         try {
             final int recipientTableKey = 0x0692;
-            if (this.recipientTable == null && this.localDescriptorItems != null
-                && this.localDescriptorItems.containsKey(recipientTableKey)) {
-                final PSTDescriptorItem item = this.localDescriptorItems.get(recipientTableKey);
+            final HashMap<Integer, PSTDescriptorItem> localDescriptorItems = this.recipientTable == null
+                ? this.getLocalDescriptorItems() : null;
+            if (localDescriptorItems != null && localDescriptorItems.containsKey(recipientTableKey)) {
+                final PSTDescriptorItem item = localDescriptorItems.get(recipientTableKey);
                 HashMap<Integer, PSTDescriptorItem> descriptorItems = null;
                 if (item.subNodeOffsetIndexIdentifier > 0) {
                     descriptorItems = this.pstFile.getPSTDescriptorItems(item.subNodeOffsetIndexIdentifier);
@@ -875,9 +876,10 @@ public class PSTMessage extends PSTObject {
      */
     private void processAttachments() throws PSTException, IOException {
         final int attachmentTableKey = 0x0671;
-        if (this.attachmentTable == null && this.localDescriptorItems != null
-            && this.localDescriptorItems.containsKey(attachmentTableKey)) {
-            final PSTDescriptorItem item = this.localDescriptorItems.get(attachmentTableKey);
+        final HashMap<Integer, PSTDescriptorItem> localDescriptorItems = this.attachmentTable == null
+            ? this.getLocalDescriptorItems() : null;
+        if (localDescriptorItems != null && localDescriptorItems.containsKey(attachmentTableKey)) {
+            final PSTDescriptorItem item = localDescriptorItems.get(attachmentTableKey);
             HashMap<Integer, PSTDescriptorItem> descriptorItems = null;
             if (item.subNodeOffsetIndexIdentifier > 0) {
                 descriptorItems = this.pstFile.getPSTDescriptorItems(item.subNodeOffsetIndexIdentifier);
@@ -931,15 +933,15 @@ public class PSTMessage extends PSTObject {
         if (this.items.containsKey(keywordCategory)) {
             try {
                 final PSTTableBCItem item = this.items.get(keywordCategory);
-                if (item.data.length == 0) {
+                if (item.getDataLength() == 0) {
                     return categories;
                 }
-                final int categoryCount = item.data[0];
+                final int categoryCount = item.getData()[0];
                 if (categoryCount > 0) {
                     categories = new String[categoryCount];
                     final int[] offsets = new int[categoryCount];
                     for (int x = 0; x < categoryCount; x++) {
-                        offsets[x] = (int) convertBigEndianBytesToLong(item.data, (x * 4) + 1,
+                        offsets[x] = (int) convertBigEndianBytesToLong(item.getData(), (x * 4) + 1,
                             (x + 1) * 4 + 1);
                     }
                     for (int x = 0; x < offsets.length - 1; x++) {
@@ -947,15 +949,15 @@ public class PSTMessage extends PSTObject {
                         final int end = offsets[x + 1];
                         final int length = (end - start);
                         final byte[] string = new byte[length];
-                        System.arraycopy(item.data, start, string, 0, length);
+                        System.arraycopy(item.getData(), start, string, 0, length);
                         final String name = new String(string, "UTF-16LE");
                         categories[x] = name;
                     }
                     final int start = offsets[offsets.length - 1];
-                    final int end = item.data.length;
+                    final int end = item.getDataLength();
                     final int length = (end - start);
                     final byte[] string = new byte[length];
-                    System.arraycopy(item.data, start, string, 0, length);
+                    System.arraycopy(item.getData(), start, string, 0, length);
                     final String name = new String(string, "UTF-16LE");
                     categories[categories.length - 1] = name;
                 }
@@ -1010,13 +1012,15 @@ public class PSTMessage extends PSTObject {
 
         // we process the C7 table here, basically we just want the attachment
         // local descriptor...
-        final HashMap<Integer, PSTTable7CItem> attachmentDetails = this.attachmentTable.getItems()
-            .get(attachmentNumber);
-        final PSTTable7CItem attachmentTableItem = attachmentDetails.get(0x67f2);
-        final int descriptorItemId = attachmentTableItem.entryValueReference;
+        final PSTTable7C.RowCursor attachmentDetails = this.attachmentTable.getRowCursor();
+        if (!attachmentDetails.moveTo(attachmentNumber)) {
+            throw new PSTException("unable to fetch attachment number " + attachmentNumber
+                + ", unable to read attachment table");
+        }
+        final int descriptorItemId = attachmentDetails.getInt(0x67f2);
 
         // get the local descriptor for the attachmentDetails table.
-        final PSTDescriptorItem descriptorItem = this.localDescriptorItems.get(descriptorItemId);
+        final PSTDescriptorItem descriptorItem = this.getLocalDescriptorItems().get(descriptorItemId);
 
         // try and decode it
         final byte[] attachmentData = descriptorItem.getData();
@@ -1052,18 +1056,16 @@ public class PSTMessage extends PSTObject {
      * @throws IOException
      */
     public PSTRecipient getRecipient(final int recipientNumber) throws PSTException, IOException {
-        if (recipientNumber >= this.getNumberOfRecipients()
-            || recipientNumber >= this.recipientTable.getItems().size()) {
+        if (recipientNumber >= this.getNumberOfRecipients()) {
             throw new PSTException("unable to fetch recipient number " + recipientNumber);
         }
 
-        final HashMap<Integer, PSTTable7CItem> recipientDetails = this.recipientTable.getItems().get(recipientNumber);
-
-        if (recipientDetails != null) {
-            return new PSTRecipient(recipientDetails);
+        // each recipient gets a cursor of its own, sat on its row
+        final PSTTable7C.RowCursor recipientDetails = this.recipientTable.getRowCursor();
+        if (!recipientDetails.moveTo(recipientNumber)) {
+            throw new PSTException("unable to fetch recipient number " + recipientNumber);
         }
-
-        return null;
+        return new PSTRecipient(recipientDetails);
     }
 
     public String getRecipientsString() {
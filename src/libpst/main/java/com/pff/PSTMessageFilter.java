@@ -0,0 +1,175 @@
+package libpst.main.java.com.pff;
+
+import java.io.IOException;
+import java.util.Date;
+
+/**
+ * Simple conditions on messages that can be checked against the contents
+ * table of a folder, so messages that don't match never have to be loaded.
+ * Conditions that haven't been set match everything, and a message that
+ * doesn't have the property a condition looks at doesn't match it.
+ * 
+ * @see PSTFolder#getMatchingChildDescriptorNodes(PSTMessageFilter)
+ */
+public class PSTMessageFilter {
+
+    private static final int PROP_MESSAGE_CLASS = 0x001A;
+    private static final int PROP_MESSAGE_DELIVERY_TIME = 0x0E06;
+    private static final int PROP_MESSAGE_FLAGS = 0x0E07;
+    private static final int PROP_MESSAGE_SIZE = 0x0E08;
+
+    private static final int MSGFLAG_READ = 0x01;
+
+    // delivery time bounds as FILETIMEs, from inclusive, to exclusive
+    private long deliveredFrom = Long.MIN_VALUE;
+    private long deliveredTo = Long.MAX_VALUE;
+    private boolean checkDeliveryTime = false;
+
+    private String messageClassPrefix = null;
+
+    private long minimumSize = -1;
+    private long maximumSize = -1;
+
+    private int readState = -1;
+
+    /**
+     * only match messages delivered in a range
+     * 
+     * @param from
+     *            earliest delivery time (inclusive), null for no lower bound
+     * @param to
+     *            latest delivery time (exclusive), null for no upper bound
+     */
+    public void setDeliveryTimeRange(final Date from, final Date to) {
+        this.deliveredFrom = from == null ? Long.MIN_VALUE : PSTObject.dateToFiletime(from);
+        this.deliveredTo = to == null ? Long.MAX_VALUE : PSTObject.dateToFiletime(to);
+        this.checkDeliveryTime = from != null || to != null;
+    }
+
+    /**
+     * only match messages whose class starts with a prefix, ignoring case,
+     * e.g. "IPM.Note"
+     */
+    public void setMessageClassPrefix(final String messageClassPrefix) {
+        this.messageClassPrefix = messageClassPrefix;
+    }
+
+    /**
+     * only match messages of at least this many bytes, -1 for no minimum
+     */
+    public void setMinimumSize(final long minimumSize) {
+        this.minimumSize = minimumSize;
+    }
+
+    /**
+     * only match messages of at most this many bytes, -1 for no maximum
+     */
+    public void setMaximumSize(final long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * only match messages that have (or haven't) been read
+     */
+    public void setRead(final boolean read) {
+        this.readState = read ? 1 : 0;
+    }
+
+    /**
+     * match messages whether they have been read or not
+     */
+    public void clearRead() {
+        this.readState = -1;
+    }
+
+    /**
+     * check the current row of a contents table
+     */
+    boolean matches(final PSTTable7C.RowCursor row) throws PSTException, IOException {
+        if (this.checkDeliveryTime) {
+            if (row.getType(PROP_MESSAGE_DELIVERY_TIME) != 0x0040) {
+                return false;
+            }
+            if (!this.isDeliveryTimeInRange(row.getLong(PROP_MESSAGE_DELIVERY_TIME))) {
+                return false;
+            }
+        }
+        if (this.minimumSize >= 0 || this.maximumSize >= 0) {
+            if (!row.hasProperty(PROP_MESSAGE_SIZE)) {
+                return false;
+            }
+            if (!this.isSizeInRange(row.getInt(PROP_MESSAGE_SIZE) & 0xFFFFFFFFL)) {
+                return false;
+            }
+        }
+        if (this.readState >= 0) {
+            if (!row.hasProperty(PROP_MESSAGE_FLAGS)) {
+                return false;
+            }
+            if (!this.isReadStateMatching(row.getInt(PROP_MESSAGE_FLAGS))) {
+                return false;
+            }
+        }
+        // the only condition that has to go to the heap, so check it last
+        if (this.messageClassPrefix != null) {
+            if (!row.hasProperty(PROP_MESSAGE_CLASS)) {
+                return false;
+            }
+            if (!this.isMessageClassMatching(row.getString(PROP_MESSAGE_CLASS))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * check a message that has already been loaded, for when there is no
+     * contents table to scan
+     */
+    boolean matches(final PSTObject object) {
+        if (this.checkDeliveryTime) {
+            final Date deliveryTime = object.getDateItem(PROP_MESSAGE_DELIVERY_TIME);
+            if (deliveryTime == null || !this.isDeliveryTimeInRange(PSTObject.dateToFiletime(deliveryTime))) {
+                return false;
+            }
+        }
+        if (this.minimumSize >= 0 || this.maximumSize >= 0) {
+            if (!object.items.containsKey(PROP_MESSAGE_SIZE)
+                || !this.isSizeInRange(object.getIntItem(PROP_MESSAGE_SIZE) & 0xFFFFFFFFL)) {
+                return false;
+            }
+        }
+        if (this.readState >= 0) {
+            if (!object.items.containsKey(PROP_MESSAGE_FLAGS)
+                || !this.isReadStateMatching(object.getIntItem(PROP_MESSAGE_FLAGS))) {
+                return false;
+            }
+        }
+        if (this.messageClassPrefix != null) {
+            if (!object.items.containsKey(PROP_MESSAGE_CLASS)
+                || !this.isMessageClassMatching(object.getMessageClass())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDeliveryTimeInRange(final long filetime) {
+        return filetime >= this.deliveredFrom && filetime < this.deliveredTo;
+    }
+
+    private boolean isSizeInRange(final long size) {
+        if (this.minimumSize >= 0 && size < this.minimumSize) {
+            return false;
+        }
+        return this.maximumSize < 0 || size <= this.maximumSize;
+    }
+
+    private boolean isReadStateMatching(final int messageFlags) {
+        return ((messageFlags & MSGFLAG_READ) != 0) == (this.readState == 1);
+    }
+
+    private boolean isMessageClassMatching(final String messageClass) {
+        return messageClass.regionMatches(true, 0, this.messageClassPrefix, 0, this.messageClassPrefix.length());
+    }
+}
@@ -57,7 +57,7 @@ public class PSTMessageStore extends PSTObject {
         if (this.items.containsKey(guidEntryType)) {
             final PSTTableBCItem item = this.items.get(guidEntryType);
             final int offset = 0;
-            final byte[] bytes = item.data;
+            final byte[] bytes = item.getData();
             final long mostSigBits = (convertLittleEndianBytesToLong(bytes, offset, offset + 4) << 32)
                 | (convertLittleEndianBytesToLong(bytes, offset + 4, offset + 6) << 16)
                 | convertLittleEndianBytesToLong(bytes, offset + 6, offset + 8);
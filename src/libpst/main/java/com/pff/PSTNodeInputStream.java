@@ -32,11 +32,19 @@ package libpst.main.java.com.pff;/*
  *
  */
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.LinkedList;
-import java.util.zip.InflaterOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * this input stream basically "maps" an input stream on top of the random
@@ -48,8 +56,19 @@ public class PSTNodeInputStream extends InputStream {
 
     private PSTFileContent in;
     private PSTFile pstFile;
-    private final LinkedList<Long> skipPoints = new LinkedList<>();
-    private final LinkedList<OffsetIndexItem> indexItems = new LinkedList<>();
+    // the blocks making up the node, blockStarts is a running total of the
+    // sizes (where each block starts in the data) so seek can binary search it
+    private long[] blockStarts = new long[0];
+    private long[] blockFileOffsets = new long[0];
+    private int[] blockSizes = new int[0];
+    private long[] blockIds = new long[0];
+    private int numberOfBlocks = 0;
+
+    // for XXBlocks, the XBlocks below us. Their blocks are only added to the
+    // arrays above when a read or seek gets that far
+    private OffsetIndexItem[] xBlocks = null;
+    private int nextXBlock = 0;
+    private long resolvedLength = 0;
     private int currentBlock = 0;
     private long currentLocation = 0;
 
@@ -105,6 +124,22 @@ public class PSTNodeInputStream extends InputStream {
 
     private final boolean isZlib = false;
 
+    /**
+     * zlib compressed nodes are inflated as they are read.
+     * Single stream nodes are one zlib stream spread across all of the blocks,
+     * multi stream nodes have a separate stream in each block.
+     */
+    private boolean compressed = false;
+    private boolean multiStreams = false;
+    private Inflater inflater = null;
+    private byte[] compressedData = null;
+    private byte[] skipBuffer = null;
+    // the block being fed to the inflater, and how far the output has got
+    private int inflateBlock = 0;
+    private long inflatedLocation = 0;
+    // where each block starts in the output, -1 if we haven't got that far
+    private long[] inflatedBlockStarts = null;
+
     private void detectZlib() throws PSTException {
         // not really sure how this is meant to work, kind of going by feel
         // here.
@@ -114,59 +149,35 @@ public class PSTNodeInputStream extends InputStream {
         try {
             if (this.read() == 0x78 && this.read() == 0x9c) {
                 boolean multiStreams = false;
-                if (this.indexItems.size() > 1) {
-                    final OffsetIndexItem i = this.indexItems.get(1);
-                    this.in.seek(i.fileOffset);
-                    multiStreams = (this.in.read() == 0x78 && this.in.read() == 0x9c);
-                }
-                // we are a compressed block, decompress the whole thing into a
-                // buffer
-                // and replace our contents with that.
-                // firstly, if we have blocks, use that as the length
-                final ByteArrayOutputStream outputStream = new ByteArrayOutputStream((int) this.length);
-                if (multiStreams) {
-                    int y = 0;
-                    for (final OffsetIndexItem i : this.indexItems) {
-                        final byte[] inData = new byte[i.size];
-                        this.in.seek(i.fileOffset);
-                        this.in.readCompletely(inData);
-                        final InflaterOutputStream inflaterStream = new InflaterOutputStream(outputStream);
-                        //try {
-                            inflaterStream.write(inData);
-                            inflaterStream.close();
-                        //} catch (Exception err) {
-                        //    System.out.println("Y: " + y);
-                        //    System.out.println(err);
-                        //    PSTObject.printHexFormatted(inData, true);
-                        //    System.exit(0);
-                        //}
-                        y++;
+                if (this.resolveBlock(1)) {
+                    final byte[] streamHeader = new byte[2];
+                    this.in.readCompletely(this.blockFileOffsets[1], streamHeader);
+                    if (this.encrypted) {
+                        PSTObject.decode(streamHeader);
                     }
-                    this.indexItems.clear();
-                    this.skipPoints.clear();
-                } else {
-                    int compressedLength = (int) this.length;
-                    if (this.indexItems.size() > 0) {
-                        compressedLength = 0;
-                        for (final OffsetIndexItem i : this.indexItems) {
-                            //System.out.println(i);
-                            compressedLength += i.size;
-                        }
-                    }
-                    final byte[] inData = new byte[compressedLength];
-                    this.seek(0);
-                    this.readCompletely(inData);
-
-                    final InflaterOutputStream inflaterStream = new InflaterOutputStream(outputStream);
-                    inflaterStream.write(inData);
-                    inflaterStream.close();
+                    multiStreams = ((streamHeader[0] & 0xFF) == 0x78 && (streamHeader[1] & 0xFF) == 0x9c);
                 }
-                outputStream.close();
-                final byte[] output = outputStream.toByteArray();
-                this.allData = output;
+                // we are a compressed block, rather than decompressing the
+                // whole thing up front we inflate as the data is asked for.
+                // The length isn't known until we get to the end.
+                this.resolveAllBlocks();
+                this.compressed = true;
+                this.multiStreams = multiStreams;
+                this.inflatedBlockStarts = new long[Math.max(1, this.numberOfBlocks)];
+                Arrays.fill(this.inflatedBlockStarts, -1);
+                this.inflatedBlockStarts[0] = 0;
+                this.length = -1;
+                this.bufferLength = 0;
                 this.currentLocation = 0;
                 this.currentBlock = 0;
-                this.length = this.allData.length;
+
+                final ExecutorService executor = this.pstFile == null ? null : this.pstFile.getInflationExecutor();
+                if (multiStreams && executor != null
+                    && this.numberOfBlocks >= PARALLEL_INFLATION_MIN_BLOCKS && this.inflateInParallel(executor)) {
+                    // all inflated already
+                } else {
+                    this.restartInflater(0);
+                }
             }
             this.seek(0);
         } catch (final IOException err) {
@@ -174,12 +185,385 @@ public class PSTNodeInputStream extends InputStream {
         }
     }
 
+    // nodes with fewer blocks than this aren't worth farming out
+    private static final int PARALLEL_INFLATION_MIN_BLOCKS = 4;
+
+    // each stream of a multi stream node holds at most a full data block
+    private static final int MAX_INFLATED_BLOCK_SIZE = 8176;
+
+    /**
+     * inflate each of the streams of a multi stream node as a separate task,
+     * straight into its own slot of the output, then close up any gaps.
+     * 
+     * @return false if the node doesn't fit that layout, in which case it
+     *         should be inflated as it is read instead
+     */
+    private boolean inflateInParallel(final ExecutorService executor) throws IOException {
+        final long capacity = (long) this.numberOfBlocks * MAX_INFLATED_BLOCK_SIZE;
+        if (capacity > Integer.MAX_VALUE) {
+            return false;
+        }
+        final byte[] output = new byte[(int) capacity];
+
+        final List<Future<Integer>> tasks = new ArrayList<>(this.numberOfBlocks);
+        for (int x = 0; x < this.numberOfBlocks; x++) {
+            final int block = x;
+            tasks.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws IOException {
+                    return PSTNodeInputStream.this.inflateBlock(block, output, block * MAX_INFLATED_BLOCK_SIZE,
+                        MAX_INFLATED_BLOCK_SIZE);
+                }
+            }));
+        }
+
+        final int[] lengths = new int[tasks.size()];
+        try {
+            for (int x = 0; x < lengths.length; x++) {
+                lengths[x] = tasks.get(x).get();
+            }
+        } catch (final ExecutionException err) {
+            for (final Future<Integer> task : tasks) {
+                task.cancel(true);
+            }
+            if (err.getCause() instanceof IOException) {
+                throw (IOException) err.getCause();
+            }
+            throw new IOException("Unable to decompress reportedly compressed block", err.getCause());
+        } catch (final InterruptedException err) {
+            for (final Future<Integer> task : tasks) {
+                task.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted decompressing block", err);
+        }
+
+        for (final int blockLength : lengths) {
+            if (blockLength < 0) {
+                return false;
+            }
+        }
+
+        // move each block down to follow on from the ones before it
+        int total = 0;
+        for (int x = 0; x < lengths.length; x++) {
+            final int blockStart = x * MAX_INFLATED_BLOCK_SIZE;
+            if (blockStart != total) {
+                System.arraycopy(output, blockStart, output, total, lengths[x]);
+            }
+            total += lengths[x];
+        }
+
+        // anything after length is unused
+        this.allData = output;
+        this.length = total;
+        this.compressed = false;
+        this.encrypted = false;
+        this.blockStarts = new long[0];
+        this.blockFileOffsets = new long[0];
+        this.blockSizes = new int[0];
+        this.blockIds = new long[0];
+        this.numberOfBlocks = 0;
+        return true;
+    }
+
+    /**
+     * inflate one of the streams of a multi stream node into part of an
+     * array, safe to call from any thread
+     * 
+     * @return the number of bytes inflated, -1 if they don't fit
+     */
+    private int inflateBlock(final int block, final byte[] output, final int offset, final int length)
+        throws IOException {
+        final byte[] data = new byte[this.blockSizes[block]];
+        this.in.readCompletely(this.blockFileOffsets[block], data);
+        if (this.encrypted) {
+            PSTObject.decode(data);
+        }
+
+        final Inflater blockInflater = new Inflater();
+        try {
+            blockInflater.setInput(data);
+            int outputLength = 0;
+            while (!blockInflater.finished()) {
+                if (outputLength == length) {
+                    // more than a block's worth
+                    return -1;
+                }
+                final int inflated = blockInflater.inflate(output, offset + outputLength, length - outputLength);
+                if (inflated == 0 && (blockInflater.needsInput() || blockInflater.needsDictionary())) {
+                    // truncated
+                    break;
+                }
+                outputLength += inflated;
+            }
+            return outputLength;
+        } catch (final DataFormatException err) {
+            throw new IOException("Unable to decompress reportedly compressed block", err);
+        } finally {
+            blockInflater.end();
+        }
+    }
+
+    /**
+     * get the (decoded) compressed data of a block
+     * 
+     * @return the size of the block
+     */
+    private int readCompressedBlock(final int block, final byte[][] target) throws IOException {
+        int size;
+        if (this.numberOfBlocks == 0) {
+            // we have the only block already
+            size = this.allData.length;
+            if (target[0] == null || target[0].length < size) {
+                target[0] = new byte[size];
+            }
+            System.arraycopy(this.allData, 0, target[0], 0, size);
+        } else {
+            size = this.blockSizes[block];
+            if (target[0] == null || target[0].length < size) {
+                target[0] = new byte[size];
+            }
+            this.in.readCompletely(this.blockFileOffsets[block], target[0], 0, size);
+        }
+        if (this.encrypted) {
+            PSTObject.decode(target[0], 0, size);
+        }
+        return size;
+    }
+
+    private void feedInflater(final int block) throws IOException {
+        final byte[][] holder = { this.compressedData };
+        final int size = this.readCompressedBlock(block, holder);
+        this.compressedData = holder[0];
+        this.inflater.setInput(this.compressedData, 0, size);
+        this.inflateBlock = block;
+    }
+
+    /**
+     * start inflating again from the beginning of a block
+     */
+    private void restartInflater(final int block) throws IOException {
+        if (this.inflater == null) {
+            this.inflater = new Inflater();
+        } else {
+            this.inflater.reset();
+        }
+        this.inflatedLocation = this.inflatedBlockStarts[block];
+        this.feedInflater(block);
+    }
+
+    /**
+     * inflate the next lot of data
+     * 
+     * @return number of bytes inflated, -1 at the end of the data
+     */
+    private int inflate(final byte[] output, final int offset, final int length) throws IOException {
+        final int numberOfBlocks = Math.max(1, this.numberOfBlocks);
+        while (true) {
+            if (this.inflater.finished()) {
+                if (this.multiStreams && this.inflateBlock + 1 < numberOfBlocks) {
+                    // on to the next stream
+                    this.inflatedBlockStarts[this.inflateBlock + 1] = this.inflatedLocation;
+                    this.inflater.reset();
+                    this.feedInflater(this.inflateBlock + 1);
+                    continue;
+                }
+                this.length = this.inflatedLocation;
+                return -1;
+            }
+            if (this.inflater.needsInput()) {
+                if (!this.multiStreams && this.inflateBlock + 1 < numberOfBlocks) {
+                    // the stream carries on in the next block
+                    this.feedInflater(this.inflateBlock + 1);
+                    continue;
+                }
+                // truncated, give them what we have
+                this.length = this.inflatedLocation;
+                return -1;
+            }
+            int inflated;
+            try {
+                inflated = this.inflater.inflate(output, offset, length);
+            } catch (final DataFormatException err) {
+                throw new IOException("Unable to decompress reportedly compressed block", err);
+            }
+            if (inflated > 0) {
+                this.inflatedLocation += inflated;
+                return inflated;
+            }
+            if (this.inflater.needsDictionary()) {
+                throw new IOException("Unable to decompress reportedly compressed block, dictionary required");
+            }
+        }
+    }
+
+    /**
+     * get the inflater to the location, restarting from the nearest block we
+     * know the start of if we have to go backwards
+     * 
+     * @return false if the data ends before the location
+     */
+    private boolean skipInflatedTo(final long location) throws IOException {
+        if (location < this.inflatedLocation) {
+            int block = 0;
+            if (this.multiStreams) {
+                for (int x = this.inflatedBlockStarts.length - 1; x > 0; x--) {
+                    if (this.inflatedBlockStarts[x] >= 0 && this.inflatedBlockStarts[x] <= location) {
+                        block = x;
+                        break;
+                    }
+                }
+            }
+            this.restartInflater(block);
+        }
+        if (this.skipBuffer == null && this.inflatedLocation < location) {
+            this.skipBuffer = new byte[8192];
+        }
+        while (this.inflatedLocation < location) {
+            final int skip = (int) Math.min(this.skipBuffer.length, location - this.inflatedLocation);
+            if (this.inflate(this.skipBuffer, 0, skip) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int readInflated(final byte[] output, final int offset, final int length) throws IOException {
+        if (!this.skipInflatedTo(this.currentLocation)) {
+            return -1;
+        }
+        int totalBytesFilled = 0;
+        while (totalBytesFilled < length) {
+            final int inflated = this.inflate(output, offset + totalBytesFilled, length - totalBytesFilled);
+            if (inflated < 0) {
+                break;
+            }
+            totalBytesFilled += inflated;
+        }
+        if (totalBytesFilled == 0 && length > 0) {
+            return -1;
+        }
+        this.currentLocation += totalBytesFilled;
+        return totalBytesFilled;
+    }
+
+    /**
+     * inflate all of a compressed node into memory, after which it is read
+     * like any other node held in memory.
+     * Used where parts of the node are wanted in any order, such as the heap
+     * of a table, so nothing gets inflated twice.
+     */
+    void inflateAll() throws IOException {
+        if (!this.compressed) {
+            return;
+        }
+        final long location = this.currentLocation;
+        byte[] data = new byte[(int) Math.max(8192, Math.min(Integer.MAX_VALUE, this.length))];
+        int total = 0;
+        this.currentLocation = 0;
+        while (true) {
+            if (total == data.length) {
+                if (data.length == Integer.MAX_VALUE) {
+                    throw new IOException("Compressed node is too large to hold in memory");
+                }
+                data = Arrays.copyOf(data, (int) Math.min(Integer.MAX_VALUE, data.length * 2L));
+            }
+            final int inflated = this.readInflated(data, total, data.length - total);
+            if (inflated < 0) {
+                break;
+            }
+            total += inflated;
+        }
+
+        // anything after length is unused
+        this.allData = data;
+        this.length = total;
+        this.compressed = false;
+        this.encrypted = false;
+        this.blockStarts = new long[0];
+        this.blockFileOffsets = new long[0];
+        this.blockSizes = new int[0];
+        this.blockIds = new long[0];
+        this.numberOfBlocks = 0;
+        this.inflater.end();
+        this.inflater = null;
+        this.compressedData = null;
+        this.skipBuffer = null;
+        this.bufferLength = 0;
+        this.currentBlock = 0;
+        this.currentLocation = Math.min(location, total);
+    }
+
+    /**
+     * work out how long a compressed node is by inflating it all without
+     * keeping the output.
+     * Corrupt data is treated as the end of the node.
+     */
+    private void measureInflatedLength() {
+        final Inflater counter = new Inflater();
+        final byte[][] holder = new byte[1][];
+        final byte[] output = new byte[8192];
+        final long[] blockStarts = this.inflatedBlockStarts.clone();
+        final int numberOfBlocks = Math.max(1, this.numberOfBlocks);
+        long total = 0;
+        try {
+            int block = 0;
+            int size = this.readCompressedBlock(block, holder);
+            counter.setInput(holder[0], 0, size);
+            while (true) {
+                if (counter.finished()) {
+                    if (this.multiStreams && block + 1 < numberOfBlocks) {
+                        block++;
+                        blockStarts[block] = total;
+                        counter.reset();
+                        size = this.readCompressedBlock(block, holder);
+                        counter.setInput(holder[0], 0, size);
+                        continue;
+                    }
+                    break;
+                }
+                if (counter.needsInput()) {
+                    if (!this.multiStreams && block + 1 < numberOfBlocks) {
+                        block++;
+                        size = this.readCompressedBlock(block, holder);
+                        counter.setInput(holder[0], 0, size);
+                        continue;
+                    }
+                    break;
+                }
+                final int inflated = counter.inflate(output);
+                if (inflated == 0 && counter.needsDictionary()) {
+                    break;
+                }
+                total += inflated;
+            }
+            this.inflatedBlockStarts = blockStarts;
+        } catch (final IOException err) {
+            // stop where we are
+        } catch (final DataFormatException err) {
+            // stop where we are
+        } finally {
+            counter.end();
+        }
+        this.length = total;
+    }
+
     private void loadFromOffsetItem(final OffsetIndexItem offsetItem) throws IOException, PSTException {
         boolean bInternal = (offsetItem.indexIdentifier & 0x02) != 0;
 
-        this.in.seek(offsetItem.fileOffset);
-        final byte[] data = new byte[offsetItem.size];
-        this.in.readCompletely(data);
+        // blocks in the cache have already been decoded
+        // (internal blocks aren't encrypted)
+        final PSTBlockCache blockCache = this.pstFile.getBlockCache();
+        byte[] data = blockCache.get(offsetItem.indexIdentifier);
+        if (data == null) {
+            data = new byte[offsetItem.size];
+            this.in.readCompletely(offsetItem.fileOffset, data);
+            if (this.encrypted && !bInternal) {
+                PSTObject.decode(data);
+            }
+            blockCache.put(offsetItem.indexIdentifier, data);
+        }
         // PSTObject.printHexFormatted(data, true);
 
         if (bInternal) {
@@ -198,13 +582,9 @@ public class PSTNodeInputStream extends InputStream {
             }
         }
 
-        // (Internal blocks aren't compressed)
-        if (bInternal) {
-            this.encrypted = false;
-        }
         this.allData = data;
         this.length = this.allData.length;
-
+        this.encrypted = false;
     }
 
     public boolean isEncrypted() {
@@ -216,51 +596,128 @@ public class PSTNodeInputStream extends InputStream {
             throw new PSTException("Unable to process XBlock, incorrect identifier");
         }
 
+        if (data[1] == 0x2) {
+            // XXBlock, just look up the XBlocks below us for now. Reading them
+            // and looking up all of their blocks can take a while for large
+            // nodes, so that waits until the data is asked for
+            this.xBlocks = this.pstFile.getOffsetIndexNodes(this.getBlockIds(data));
+            this.nextXBlock = 0;
+        } else if (data[1] == 0x1) {
+            // normal XBlock, add all of the blocks to the list
+            this.addBlocks(this.pstFile.getOffsetIndexNodes(this.getBlockIds(data)));
+        }
+    }
+
+    /**
+     * add blocks to the end of the node
+     */
+    private void addBlocks(final OffsetIndexItem[] offsetItems) {
+        final int total = this.numberOfBlocks + offsetItems.length;
+        if (total > this.blockSizes.length) {
+            final int capacity = Math.max(total, this.blockSizes.length * 2);
+            this.blockStarts = Arrays.copyOf(this.blockStarts, capacity);
+            this.blockFileOffsets = Arrays.copyOf(this.blockFileOffsets, capacity);
+            this.blockSizes = Arrays.copyOf(this.blockSizes, capacity);
+            this.blockIds = Arrays.copyOf(this.blockIds, capacity);
+        }
+        for (final OffsetIndexItem offsetItem : offsetItems) {
+            this.blockStarts[this.numberOfBlocks] = this.resolvedLength;
+            this.blockFileOffsets[this.numberOfBlocks] = offsetItem.fileOffset;
+            this.blockSizes[this.numberOfBlocks] = offsetItem.size;
+            this.blockIds[this.numberOfBlocks] = offsetItem.indexIdentifier;
+            this.resolvedLength += offsetItem.size;
+            this.numberOfBlocks++;
+        }
+    }
+
+    /**
+     * read the next XBlock of an XXBlock and add its blocks
+     * 
+     * @return false if there are no more XBlocks
+     */
+    private boolean resolveNextXBlock() throws IOException {
+        if (this.xBlocks == null || this.nextXBlock >= this.xBlocks.length) {
+            return false;
+        }
+        final OffsetIndexItem xBlock = this.xBlocks[this.nextXBlock++];
+        final byte[] blockData = new byte[xBlock.size];
+        this.in.readCompletely(xBlock.fileOffset, blockData);
+        if (blockData[0] != 0x1) {
+            throw new IOException("Unable to process XBlock, incorrect identifier");
+        }
+        if (blockData[1] == 0x1) {
+            try {
+                this.addBlocks(this.pstFile.getOffsetIndexNodes(this.getBlockIds(blockData)));
+            } catch (final PSTException err) {
+                throw new IOException("Unable to process XBlock", err);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the block is (now) known
+     */
+    private boolean resolveBlock(final int block) throws IOException {
+        while (block >= this.numberOfBlocks) {
+            if (!this.resolveNextXBlock()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void resolveAllBlocks() throws IOException {
+        while (this.resolveNextXBlock()) {
+            // keep going
+        }
+    }
+
+    /**
+     * get the ids of the blocks listed in an XBlock or XXBlock
+     */
+    private long[] getBlockIds(final byte[] data) {
         final int numberOfEntries = (int) PSTObject.convertLittleEndianBytesToLong(data, 2, 4);
 
         int arraySize = 8;
         if (this.pstFile.getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
             arraySize = 4;
         }
-        if (data[1] == 0x2) {
-            // XXBlock
-            int offset = 8;
-            for (int x = 0; x < numberOfEntries; x++) {
-                long bid = PSTObject.convertLittleEndianBytesToLong(data, offset, offset + arraySize);
-                bid &= 0xfffffffe;
-                // get the details in this block and
-                final OffsetIndexItem offsetItem = this.pstFile.getOffsetIndexNode(bid);
-                this.in.seek(offsetItem.fileOffset);
-                final byte[] blockData = new byte[offsetItem.size];
-                this.in.readCompletely(blockData);
-                this.getBlockSkipPoints(blockData);
-                offset += arraySize;
-            }
-        } else if (data[1] == 0x1) {
-            // normal XBlock
-            int offset = 8;
-            for (int x = 0; x < numberOfEntries; x++) {
-                long bid = PSTObject.convertLittleEndianBytesToLong(data, offset, offset + arraySize);
-                bid &= 0xfffffffe;
-                // get the details in this block and add it to the list
-                final OffsetIndexItem offsetItem = this.pstFile.getOffsetIndexNode(bid);
-                this.indexItems.add(offsetItem);
-                this.skipPoints.add(this.currentLocation);
-                this.currentLocation += offsetItem.size;
-                offset += arraySize;
-            }
+        final long[] bids = new long[numberOfEntries];
+        int offset = 8;
+        for (int x = 0; x < numberOfEntries; x++) {
+            long bid = PSTObject.convertLittleEndianBytesToLong(data, offset, offset + arraySize);
+            bid &= 0xfffffffe;
+            bids[x] = bid;
+            offset += arraySize;
         }
+        return bids;
     }
 
+    /**
+     * For compressed nodes working out the length means inflating everything,
+     * so avoid asking if you only want the first part of the data.
+     */
     public long length() {
+        if (this.compressed && this.length < 0) {
+            this.measureInflatedLength();
+        }
         return this.length;
     }
 
+    /**
+     * decoded bytes around the current location, used by read() so we don't
+     * go to the file for every byte
+     */
+    private byte[] buffer = null;
+    private long bufferStart = 0;
+    private int bufferLength = 0;
+
     @Override
     public int read() throws IOException {
 
         // first deal with items < 8K and we have all the data already
-        if (this.allData != null) {
+        if (this.allData != null && !this.compressed) {
             if (this.currentLocation == this.length) {
                 // EOF
                 return -1;
@@ -268,41 +725,32 @@ public class PSTNodeInputStream extends InputStream {
             int value = this.allData[(int) this.currentLocation] & 0xFF;
             this.currentLocation++;
             if (this.encrypted) {
-                value = PSTObject.compEnc[value];
+                value = PSTCompressibleDecoder.decode(value);
             }
             return value;
         }
 
-        OffsetIndexItem item = this.indexItems.get(this.currentBlock);
-        long skipPoint = this.skipPoints.get(this.currentBlock);
-        if (this.currentLocation + 1 > skipPoint + item.size) {
-            // got to move to the next block
-            this.currentBlock++;
-
-            if (this.currentBlock >= this.indexItems.size()) {
+        if (this.currentLocation < this.bufferStart
+            || this.currentLocation >= this.bufferStart + this.bufferLength) {
+            // refill the buffer from the current block
+            if (this.buffer == null) {
+                this.buffer = new byte[8192];
+            }
+            // filling the buffer moves us on, come back to where we were
+            final long location = this.currentLocation;
+            final int block = this.currentBlock;
+            final int read = this.read(this.buffer, 0, this.buffer.length);
+            this.bufferStart = location;
+            this.bufferLength = Math.max(read, 0);
+            this.currentLocation = location;
+            this.currentBlock = block;
+            if (read <= 0) {
                 return -1;
             }
-
-            item = this.indexItems.get(this.currentBlock);
-            skipPoint = this.skipPoints.get(this.currentBlock);
-        }
-
-        // get the next byte.
-        final long pos = (item.fileOffset + (this.currentLocation - skipPoint));
-        if (this.in.getFilePointer() != pos) {
-            this.in.seek(pos);
-        }
-
-        int output = this.in.read();
-        if (output < 0) {
-            return -1;
-        }
-        if (this.encrypted) {
-            output = PSTObject.compEnc[output];
         }
 
+        final int output = this.buffer[(int) (this.currentLocation - this.bufferStart)] & 0xFF;
         this.currentLocation++;
-
         return output;
     }
 
@@ -337,107 +785,74 @@ public class PSTNodeInputStream extends InputStream {
      */
     @Override
     public int read(final byte[] output) throws IOException {
-        // this method is implemented in an attempt to make things a bit faster
-        // than the byte-by-byte read() crap above.
-        // it's tricky 'cause we have to copy blocks from a few different areas.
+        return this.read(output, 0, output.length);
+    }
+
+    /**
+     * Read from the input stream straight into the output, a block at a time.
+     * Nothing is allocated along the way, data is decoded in place.
+     */
+    @Override
+    public int read(final byte[] output, final int offset, final int length) throws IOException {
+        if (this.compressed) {
+            return this.readInflated(output, offset, length);
+        }
 
         if (this.currentLocation == this.length) {
             // EOF
             return -1;
         }
 
+        // don't go past the end
+        final int bytesToRead = (int) Math.min(length, this.length - this.currentLocation);
+        if (bytesToRead <= 0) {
+            return 0;
+        }
+
         // first deal with the small stuff
         if (this.allData != null) {
-            final int bytesRemaining = (int) (this.length - this.currentLocation);
-            if (output.length >= bytesRemaining) {
-                System.arraycopy(this.allData, (int) this.currentLocation, output, 0, bytesRemaining);
-                if (this.encrypted) {
-                    PSTObject.decode(output);
-                }
-                this.currentLocation += bytesRemaining; // should be = to
-                                                        // this.length
-                return bytesRemaining;
-            } else {
-                System.arraycopy(this.allData, (int) this.currentLocation, output, 0, output.length);
-                if (this.encrypted) {
-                    PSTObject.decode(output);
-                }
-                this.currentLocation += output.length;
-                return output.length;
+            System.arraycopy(this.allData, (int) this.currentLocation, output, offset, bytesToRead);
+            if (this.encrypted) {
+                PSTObject.decode(output, offset, bytesToRead);
             }
+            this.currentLocation += bytesToRead;
+            return bytesToRead;
         }
 
-        boolean filled = false;
         int totalBytesFilled = 0;
         // while we still need to fill the array
-        while (!filled) {
-
-            // fill up the output from where we are
-            // get the current block, either to the end, or until the length of
-            // the output
-            final OffsetIndexItem offset = this.indexItems.get(this.currentBlock);
-            final long skipPoint = this.skipPoints.get(this.currentBlock);
-            final int currentPosInBlock = (int) (this.currentLocation - skipPoint);
-            this.in.seek(offset.fileOffset + currentPosInBlock);
-
-            final long nextSkipPoint = skipPoint + offset.size;
-            int bytesRemaining = (output.length - totalBytesFilled);
-            // if the total bytes remaining if going to take us past our size
-            if (bytesRemaining > ((int) (this.length - this.currentLocation))) {
-                // we only have so much to give
-                bytesRemaining = (int) (this.length - this.currentLocation);
-            }
-
-            if (nextSkipPoint >= this.currentLocation + bytesRemaining) {
-                // we can fill the output with the rest of our current block!
-                final byte[] chunk = new byte[bytesRemaining];
-                this.in.readCompletely(chunk);
-
-                System.arraycopy(chunk, 0, output, totalBytesFilled, bytesRemaining);
-                totalBytesFilled += bytesRemaining;
-                // we are done!
-                filled = true;
-                this.currentLocation += bytesRemaining;
-            } else {
-                // we need to read out a whole chunk and keep going
-                final int bytesToRead = offset.size - currentPosInBlock;
-                final byte[] chunk = new byte[bytesToRead];
-                this.in.readCompletely(chunk);
-                System.arraycopy(chunk, 0, output, totalBytesFilled, bytesToRead);
-                totalBytesFilled += bytesToRead;
+        while (totalBytesFilled < bytesToRead) {
+            // get the current block
+            if (!this.resolveBlock(this.currentBlock)) {
+                break;
+            }
+            final int blockSize = this.blockSizes[this.currentBlock];
+            final int currentPosInBlock = (int) (this.currentLocation - this.blockStarts[this.currentBlock]);
+            if (currentPosInBlock >= blockSize) {
+                // got to move to the next block
                 this.currentBlock++;
-                this.currentLocation += bytesToRead;
+                continue;
             }
-            this.totalLoopCount++;
-        }
 
-        // decode the array if required
-        if (this.encrypted) {
-            PSTObject.decode(output);
+            // either to the end of the block or until the output is full
+            final int chunk = Math.min(bytesToRead - totalBytesFilled, blockSize - currentPosInBlock);
+            this.in.readCompletely(this.blockFileOffsets[this.currentBlock] + currentPosInBlock, output,
+                offset + totalBytesFilled, chunk);
+            totalBytesFilled += chunk;
+            this.currentLocation += chunk;
+            this.totalLoopCount++;
         }
 
-        // fill up our chunk
-        // move to the next chunk
-        return totalBytesFilled;
-    }
-
-    @Override
-    public int read(final byte[] output, final int offset, int length) throws IOException {
-        if (this.currentLocation == this.length) {
-            // EOF
+        if (totalBytesFilled == 0) {
             return -1;
         }
 
-        if (output.length < length) {
-            length = output.length;
+        // decode the array if required
+        if (this.encrypted) {
+            PSTObject.decode(output, offset, totalBytesFilled);
         }
 
-        final byte[] buf = new byte[length];
-        final int lengthRead = this.read(buf);
-
-        System.arraycopy(buf, 0, output, offset, lengthRead);
-
-        return lengthRead;
+        return totalBytesFilled;
     }
 
     @Override
@@ -456,69 +871,127 @@ public class PSTNodeInputStream extends InputStream {
      * 
      * @return
      */
-    public Long[] getBlockOffsets() {
-        if (this.skipPoints.size() == 0) {
-            final Long[] output = new Long[1];
-            output[0] = this.length;
-            return output;
-        } else {
-            final Long[] output = new Long[this.skipPoints.size()];
-            for (int x = 0; x < output.length; x++) {
-                output[x] = new Long(this.skipPoints.get(x) + this.indexItems.get(x).size);
-            }
-            return output;
+    public long[] getBlockOffsets() throws IOException {
+        // no block boundaries once it's inflated, we may as well keep it
+        this.inflateAll();
+        this.resolveAllBlocks();
+        if (this.numberOfBlocks == 0) {
+            return new long[] { this.length() };
         }
+        final long[] output = new long[this.numberOfBlocks];
+        for (int x = 0; x < output.length; x++) {
+            output[x] = this.blockStarts[x] + this.blockSizes[x];
+        }
+        return output;
     }
 
-    /*
-     * public int[] getBlockOffsetsInts() {
-     * int[] out = new int[this.skipPoints.size()];
-     * for (int x = 0; x < this.skipPoints.size(); x++) {
-     * out[x] = this.skipPoints.get(x).intValue();
-     * }
-     * return out;
-     * }
-     *
-     */
-
     public void seek(final long location) throws IOException, PSTException {
+        if (this.compressed) {
+            // going forwards we skip over the data now, going backwards
+            // we restart from a block boundary on the next read
+            if ((this.length >= 0 && location > this.length)
+                || (this.length < 0 && location > this.inflatedLocation && !this.skipInflatedTo(location))) {
+                throw new PSTException(
+                    "Unable to seek past end of item! size = " + this.length() + ", seeking to:" + location);
+            }
+            this.currentLocation = location;
+            return;
+        }
+
         // not past the end!
         if (location > this.length) {
             throw new PSTException(
                 "Unable to seek past end of item! size = " + this.length + ", seeking to:" + location);
         }
 
-        // are we already there?
-        if (this.currentLocation == location) {
-            return;
-        }
-
-        // get us to the right block
-        long skipPoint = 0;
+        // get us to the right block, the last one starting at or before the
+        // location
         this.currentBlock = 0;
         if (this.allData == null) {
-            skipPoint = this.skipPoints.get(this.currentBlock + 1);
-            while (location >= skipPoint) {
-                this.currentBlock++;
-                // is this the last block?
-                if (this.currentBlock == this.skipPoints.size() - 1) {
-                    // that's all folks
-                    break;
-                } else {
-                    skipPoint = this.skipPoints.get(this.currentBlock + 1);
-                }
-            }
+            this.currentBlock = Math.max(0, this.findBlock(location));
         }
 
         // now move us to the right position in there
+        // (block reads are positional, the file pointer doesn't need to follow)
         this.currentLocation = location;
+    }
 
-        if (this.allData == null) {
-            long blockStart = this.indexItems.get(this.currentBlock).fileOffset;
-            final long newFilePos = blockStart + (location - skipPoint);
-            this.in.seek(newFilePos);
+    /**
+     * Get part of the (decoded) data as a read only, little endian buffer.
+     * Where the data is all in one block already in memory the buffer is a
+     * view of that block, otherwise the data is copied.
+     * Doesn't move the current location.
+     */
+    ByteBuffer getSlice(final long offset, final int length) throws IOException {
+        // inflated once and then handed out as views
+        this.inflateAll();
+
+        if (offset < 0 || length < 0 || offset + length > this.length) {
+            throw new IOException("Unable to read " + length + " bytes at " + offset + ", size = " + this.length);
         }
 
+        byte[] block = null;
+        int blockOffset = 0;
+        if (this.allData != null) {
+            if (!this.encrypted) {
+                block = this.allData;
+                blockOffset = (int) offset;
+            }
+        } else {
+            final int index = this.findBlock(offset);
+            if (index >= 0 && offset + length <= this.blockStarts[index] + this.blockSizes[index]) {
+                block = this.getBlockData(index);
+                blockOffset = (int) (offset - this.blockStarts[index]);
+            }
+        }
+
+        if (block == null) {
+            // spread over more than one block, copy it
+            final long location = this.currentLocation;
+            final byte[] data = new byte[length];
+            try {
+                this.seek(offset);
+                this.readCompletely(data);
+                this.seek(location);
+            } catch (final PSTException err) {
+                throw new IOException(err.getMessage(), err);
+            }
+            block = data;
+            blockOffset = 0;
+        }
+
+        final ByteBuffer output = ByteBuffer.wrap(block, blockOffset, length).slice().asReadOnlyBuffer();
+        output.order(ByteOrder.LITTLE_ENDIAN);
+        return output;
+    }
+
+    /**
+     * @return the block holding a location, -1 if there isn't one
+     */
+    private int findBlock(final long location) throws IOException {
+        while (location >= this.resolvedLength && this.resolveNextXBlock()) {
+            // keep going
+        }
+        final int index = Arrays.binarySearch(this.blockStarts, 0, this.numberOfBlocks, location);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * get the decoded data of one of our blocks, from the block cache if
+     * we can
+     */
+    private byte[] getBlockData(final int block) throws IOException {
+        final PSTBlockCache blockCache = this.pstFile.getBlockCache();
+        byte[] data = blockCache.get(this.blockIds[block]);
+        if (data == null) {
+            data = new byte[this.blockSizes[block]];
+            this.in.readCompletely(this.blockFileOffsets[block], data);
+            if (this.encrypted) {
+                PSTObject.decode(data);
+            }
+            blockCache.put(this.blockIds[block], data);
+        }
+        return data;
     }
 
     public long seekAndReadLong(final long location, final int bytes) throws IOException, PSTException {
@@ -532,4 +1005,12 @@ public class PSTNodeInputStream extends InputStream {
         return this.pstFile;
     }
 
+    @Override
+    public void close() throws IOException {
+        if (this.inflater != null) {
+            this.inflater.end();
+            this.inflater = null;
+        }
+    }
+
 }
@@ -33,12 +33,11 @@ package libpst.main.java.com.pff; /**
  */
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.Set;
 import java.util.Locale;
 import java.io.UnsupportedEncodingException;
 
@@ -121,8 +120,10 @@ public class PSTObject {
     protected PSTFile pstFile;
     protected byte[] data;
     protected DescriptorIndexNode descriptorIndexNode;
-    protected HashMap<Integer, PSTTableBCItem> items;
+    protected PSTPropertyMap<PSTTableBCItem> items;
     protected HashMap<Integer, PSTDescriptorItem> localDescriptorItems = null;
+    // the local descriptors (subnodes) are only read when first needed
+    private boolean localDescriptorItemsLoaded = false;
 
     protected LinkedHashMap<String, HashMap<DescriptorIndexNode, PSTObject>> children;
 
@@ -138,14 +139,7 @@ public class PSTObject {
             this.pstFile.getOffsetIndexNode(descriptorIndexNode.dataOffsetIndexIdentifier)));
         // System.out.println(table);
         this.items = table.getItems();
-
-        if (descriptorIndexNode.localDescriptorsOffsetIndexIdentifier != 0) {
-            // PSTDescriptor descriptor = new PSTDescriptor(theFile,
-            // descriptorIndexNode.localDescriptorsOffsetIndexIdentifier);
-            // localDescriptorItems = descriptor.getChildren();
-            this.localDescriptorItems = theFile
-                .getPSTDescriptorItems(descriptorIndexNode.localDescriptorsOffsetIndexIdentifier);
-        }
+        // local descriptors are left until getLocalDescriptorItems
     }
 
     /**
@@ -154,6 +148,9 @@ public class PSTObject {
      * @param theFile
      * @param folderIndexNode
      * @param table
+     * @param localDescriptorItems
+     *            the local descriptors, or null to read them from
+     *            folderIndexNode if they are needed
      */
     protected PSTObject(final PSTFile theFile, final DescriptorIndexNode folderIndexNode, final PSTTableBC table,
         final HashMap<Integer, PSTDescriptorItem> localDescriptorItems) {
@@ -162,6 +159,47 @@ public class PSTObject {
         this.items = table.getItems();
         this.table = table;
         this.localDescriptorItems = localDescriptorItems;
+        this.localDescriptorItemsLoaded = localDescriptorItems != null;
+    }
+
+    /**
+     * get the local descriptors (subnodes) of this object, reading them the
+     * first time.
+     * Only values held outside the property context, like big strings and
+     * binaries, and the recipient and attachment tables need them.
+     * 
+     * @return the local descriptors, null if there aren't any
+     * @throws PSTException
+     * @throws IOException
+     */
+    protected HashMap<Integer, PSTDescriptorItem> getLocalDescriptorItems() throws PSTException, IOException {
+        if (!this.localDescriptorItemsLoaded) {
+            if (this.descriptorIndexNode != null
+                && this.descriptorIndexNode.localDescriptorsOffsetIndexIdentifier != 0) {
+                this.localDescriptorItems = this.pstFile
+                    .getPSTDescriptorItems(this.descriptorIndexNode.localDescriptorsOffsetIndexIdentifier);
+            }
+            this.localDescriptorItemsLoaded = true;
+        }
+        return this.localDescriptorItems;
+    }
+
+    /**
+     * @return the local descriptor for an external value, null if there isn't
+     *         one
+     * @throws IllegalStateException
+     *             if the local descriptors can't be read, for the item getters
+     *             that can't throw anything checked
+     */
+    private PSTDescriptorItem getLocalDescriptorItem(final int identifier) {
+        final HashMap<Integer, PSTDescriptorItem> descriptorItems;
+        try {
+            descriptorItems = this.getLocalDescriptorItems();
+        } catch (final PSTException | IOException e) {
+            throw new IllegalStateException("Unable to read local descriptors of "
+                + this.descriptorIndexNode.descriptorIdentifier, e);
+        }
+        return descriptorItems == null ? null : descriptorItems.get(identifier);
     }
 
     protected PSTTableBC table;
@@ -205,8 +243,8 @@ public class PSTObject {
     }
 
     protected int getIntItem(final int identifier, final int defaultValue) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
             return item.entryValueReference;
         }
         return defaultValue;
@@ -217,8 +255,8 @@ public class PSTObject {
     }
 
     protected boolean getBooleanItem(final int identifier, final boolean defaultValue) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
             return item.entryValueReference != 0;
         }
         return defaultValue;
@@ -229,9 +267,9 @@ public class PSTObject {
     }
 
     protected double getDoubleItem(final int identifier, final double defaultValue) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
-            final long longVersion = PSTObject.convertLittleEndianBytesToLong(item.data);
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
+            final long longVersion = PSTObject.convertLittleEndianBytesToLong(item.getData());
             return Double.longBitsToDouble(longVersion);
         }
         return defaultValue;
@@ -242,15 +280,15 @@ public class PSTObject {
     }
 
     protected long getLongItem(final int identifier, final long defaultValue) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
             if (item.entryValueType == 0x0003) {
                 // we are really just an int
                 return item.entryValueReference;
             } else if (item.entryValueType == 0x0014) {
                 // we are a long
-                if (item.data != null && item.data.length == 8) {
-                    return PSTObject.convertLittleEndianBytesToLong(item.data, 0, 8);
+                if (item.getDataLength() == 8) {
+                    return PSTObject.convertLittleEndianBytesToLong(item.getData(), 0, 8);
                 } else {
                     System.err.printf("Invalid data length for long id 0x%04X\n", identifier);
                     // Return the default value for now...
@@ -284,12 +322,12 @@ public class PSTObject {
             // see if there is a descriptor entry
             if (!item.isExternalValueReference) {
                 // System.out.println("here: "+new
-                // String(item.data)+this.descriptorIndexNode.descriptorIdentifier);
-                return PSTObject.createJavaString(item.data, stringType, codepage);
+                // String(item.getData())+this.descriptorIndexNode.descriptorIdentifier);
+                return PSTObject.createJavaString(item.getData(), stringType, codepage);
             }
-            if (this.localDescriptorItems != null && this.localDescriptorItems.containsKey(item.entryValueReference)) {
+            final PSTDescriptorItem descItem = this.getLocalDescriptorItem(item.entryValueReference);
+            if (descItem != null) {
                 // we have a hit!
-                final PSTDescriptorItem descItem = this.localDescriptorItems.get(item.entryValueReference);
 
                 try {
                     final byte[] data = descItem.getData();
@@ -373,13 +411,13 @@ public class PSTObject {
     }
 
     public Date getDateItem(final int identifier) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
-            if (item.data.length == 0) {
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
+            if (item.getDataLength() == 0) {
                 return new Date(0);
             }
-            final int high = (int) PSTObject.convertLittleEndianBytesToLong(item.data, 4, 8);
-            final int low = (int) PSTObject.convertLittleEndianBytesToLong(item.data, 0, 4);
+            final int high = (int) PSTObject.convertLittleEndianBytesToLong(item.getData(), 4, 8);
+            final int low = (int) PSTObject.convertLittleEndianBytesToLong(item.getData(), 0, 4);
 
             return PSTObject.filetimeToDate(high, low);
         }
@@ -387,16 +425,15 @@ public class PSTObject {
     }
 
     protected byte[] getBinaryItem(final int identifier) {
-        if (this.items.containsKey(identifier)) {
-            final PSTTableBCItem item = this.items.get(identifier);
+        final PSTTableBCItem item = this.items.get(identifier);
+        if (item != null) {
             if (item.entryValueType == 0x0102) {
                 if (!item.isExternalValueReference) {
-                    return item.data;
+                    return item.getData();
                 }
-                if (this.localDescriptorItems != null
-                    && this.localDescriptorItems.containsKey(item.entryValueReference)) {
+                final PSTDescriptorItem descItem = this.getLocalDescriptorItem(item.entryValueReference);
+                if (descItem != null) {
                     // we have a hit!
-                    final PSTDescriptorItem descItem = this.localDescriptorItems.get(item.entryValueReference);
                     try {
                         return descItem.getData();
                     } catch (final Exception e) {
@@ -590,29 +627,23 @@ public class PSTObject {
      * @return decoded data
      */
     protected static byte[] decode(final byte[] data) {
-        int temp;
-        for (int x = 0; x < data.length; x++) {
-            temp = data[x] & 0xff;
-            data[x] = (byte) compEnc[temp];
-        }
-
+        decode(data, 0, data.length);
         return data;
     }
 
-    protected static byte[] encode(final byte[] data) {
-        // create the encoding array...
-        final int[] enc = new int[compEnc.length];
-        for (int x = 0; x < enc.length; x++) {
-            enc[compEnc[x]] = x;
-        }
-
-        // now it's just the same as decode...
-        int temp;
-        for (int x = 0; x < data.length; x++) {
-            temp = data[x] & 0xff;
-            data[x] = (byte) enc[temp];
-        }
+    /**
+     * decode part of an array in place
+     * 
+     * @param data
+     * @param offset
+     * @param length
+     */
+    protected static void decode(final byte[] data, final int offset, final int length) {
+        PSTCompressibleDecoder.decode(data, offset, length);
+    }
 
+    protected static byte[] encode(final byte[] data) {
+        PSTCompressibleDecoder.encode(data, 0, data.length);
         return data;
     }
 
@@ -649,6 +680,18 @@ public class PSTObject {
         return offset;
     }
 
+    /**
+     * Utility function for converting little endian bytes in a buffer into a
+     * usable java long, start and end are absolute positions in the buffer
+     */
+    static long convertLittleEndianBytesToLong(final ByteBuffer data, final int start, final int end) {
+        long offset = 0;
+        for (int x = end - 1; x >= start; x--) {
+            offset = (offset << 8) | (data.get(x) & 0xffL);
+        }
+        return offset;
+    }
+
     /**
      * Utility function for converting big endian bytes into a usable java long
      * 
@@ -744,17 +787,11 @@ public class PSTObject {
             final PSTTableBC table = new PSTTableBC(
                 new PSTNodeInputStream(theFile, theFile.getOffsetIndexNode(folderIndexNode.dataOffsetIndexIdentifier)));
 
-            HashMap<Integer, PSTDescriptorItem> localDescriptorItems = null;
-            if (folderIndexNode.localDescriptorsOffsetIndexIdentifier != 0) {
-                localDescriptorItems = theFile
-                    .getPSTDescriptorItems(folderIndexNode.localDescriptorsOffsetIndexIdentifier);
-            }
-
+            // the local descriptors are read if and when they are needed
             if (nidType == 0x02 || nidType == 0x03) {
-                return new PSTFolder(theFile, folderIndexNode, table, localDescriptorItems);
+                return new PSTFolder(theFile, folderIndexNode, table, null);
             } else {
-                return PSTObject.createAppropriatePSTMessageObject(theFile, folderIndexNode, table,
-                    localDescriptorItems);
+                return PSTObject.createAppropriatePSTMessageObject(theFile, folderIndexNode, table, null);
             }
         } else {
             throw new PSTException(
@@ -803,26 +840,24 @@ public class PSTObject {
             new PSTNodeInputStream(theFile, theFile.getOffsetIndexNode(folderIndexNode.dataOffsetIndexIdentifier)));
 
         // get the table items and look at the types we are dealing with
-        final Set<Integer> keySet = table.getItems().keySet();
-        final Iterator<Integer> iterator = keySet.iterator();
-
-        while (iterator.hasNext()) {
-            final Integer key = iterator.next();
-            if (key.intValue() >= 0x0001 && key.intValue() <= 0x0bff) {
+        final PSTPropertyMap<PSTTableBCItem> items = table.getItems();
+        for (int x = 0; x < items.size(); x++) {
+            final int key = items.keyAt(x);
+            if (key >= 0x0001 && key <= 0x0bff) {
                 return "Message envelope";
-            } else if (key.intValue() >= 0x1000 && key.intValue() <= 0x2fff) {
+            } else if (key >= 0x1000 && key <= 0x2fff) {
                 return "Message content";
-            } else if (key.intValue() >= 0x3400 && key.intValue() <= 0x35ff) {
+            } else if (key >= 0x3400 && key <= 0x35ff) {
                 return "Message store";
-            } else if (key.intValue() >= 0x3600 && key.intValue() <= 0x36ff) {
+            } else if (key >= 0x3600 && key <= 0x36ff) {
                 return "Folder and address book";
-            } else if (key.intValue() >= 0x3700 && key.intValue() <= 0x38ff) {
+            } else if (key >= 0x3700 && key <= 0x38ff) {
                 return "Attachment";
-            } else if (key.intValue() >= 0x3900 && key.intValue() <= 0x39ff) {
+            } else if (key >= 0x3900 && key <= 0x39ff) {
                 return "Address book";
-            } else if (key.intValue() >= 0x3a00 && key.intValue() <= 0x3bff) {
+            } else if (key >= 0x3a00 && key <= 0x3bff) {
                 return "Messaging user";
-            } else if (key.intValue() >= 0x3c00 && key.intValue() <= 0x3cff) {
+            } else if (key >= 0x3c00 && key <= 0x3cff) {
                 return "Distribution list";
             }
         }
@@ -871,6 +906,14 @@ public class PSTObject {
         return new Date(ms_since_19700101);
     }
 
+    /**
+     * Converts a {@link Date} to a Windows FILETIME, the reverse of
+     * filetimeToDate
+     */
+    static long dateToFiletime(final Date date) {
+        return (date.getTime() + EPOCH_DIFF) * (1000 * 10);
+    }
+
     public static Calendar apptTimeToCalendar(final int minutes) {
         final long ms_since_16010101 = minutes * (60 * 1000L);
         final long ms_since_19700101 = ms_since_16010101 - EPOCH_DIFF;
@@ -0,0 +1,121 @@
+package libpst.main.java.com.pff;
+
+import java.util.Arrays;
+
+/**
+ * Map of property ids to items, kept as a sorted array of ids and searched
+ * with a binary search.
+ * Property contexts are read in id order, so filling one is just appending,
+ * and a lookup doesn't box the id or hash it.
+ */
+final class PSTPropertyMap<V> {
+
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    PSTPropertyMap() {
+        this(16);
+    }
+
+    PSTPropertyMap(final int initialCapacity) {
+        this.keys = new int[Math.max(1, initialCapacity)];
+        this.values = new Object[this.keys.length];
+    }
+
+    /**
+     * @return the position of the key, or (-(insertion point) - 1) if it isn't
+     *         in the map
+     */
+    private int indexOf(final int key) {
+        // the common case while filling, and for the last item
+        if (this.size > 0 && this.keys[this.size - 1] == key) {
+            return this.size - 1;
+        }
+        return Arrays.binarySearch(this.keys, 0, this.size, key);
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(final int key) {
+        final int index = this.indexOf(key);
+        return index >= 0 ? (V) this.values[index] : null;
+    }
+
+    boolean containsKey(final int key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * add an item, replacing any existing one with the same id
+     */
+    void put(final int key, final V value) {
+        if (this.size == 0 || key > this.keys[this.size - 1]) {
+            this.ensureCapacity();
+            this.keys[this.size] = key;
+            this.values[this.size] = value;
+            this.size++;
+            return;
+        }
+        int index = this.indexOf(key);
+        if (index >= 0) {
+            this.values[index] = value;
+            return;
+        }
+        index = -index - 1;
+        this.ensureCapacity();
+        System.arraycopy(this.keys, index, this.keys, index + 1, this.size - index);
+        System.arraycopy(this.values, index, this.values, index + 1, this.size - index);
+        this.keys[index] = key;
+        this.values[index] = value;
+        this.size++;
+    }
+
+    private void ensureCapacity() {
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.values = Arrays.copyOf(this.values, this.size * 2);
+        }
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return the id at a position, positions run from 0 to size() - 1 in id
+     *         order
+     */
+    int keyAt(final int index) {
+        if (index >= this.size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return this.keys[index];
+    }
+
+    /**
+     * @return the item at a position, see keyAt
+     */
+    @SuppressWarnings("unchecked")
+    V valueAt(final int index) {
+        if (index >= this.size) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return (V) this.values[index];
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder output = new StringBuilder("{");
+        for (int x = 0; x < this.size; x++) {
+            if (x > 0) {
+                output.append(", ");
+            }
+            output.append(this.keys[x]).append('=').append(this.values[x]);
+        }
+        return output.append('}').toString();
+    }
+}
@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 
 public class PSTRAFileContent extends PSTFileContent {
 
@@ -41,6 +42,13 @@ public class PSTRAFileContent extends PSTFileContent {
         return this.file.read(target);
     }
 
+    @Override
+    public int read(final long position, final byte[] target, final int offset, final int length)
+        throws IOException {
+        // FileChannel positional reads leave the file pointer alone
+        return this.file.getChannel().read(ByteBuffer.wrap(target, offset, length), position);
+    }
+
     @Override
     public byte readByte() throws IOException {
         return this.file.readByte();
@@ -33,7 +33,7 @@ package libpst.main.java.com.pff; /**
  */
 
 // import java.util.Date;
-import java.util.HashMap;
+import java.io.IOException;
 
 /**
  * Class containing recipient information
@@ -43,13 +43,15 @@ import java.util.HashMap;
  *
  */
 public class PSTRecipient {
-    private final HashMap<Integer, PSTTable7CItem> details;
+    private final PSTTable7C.RowCursor details;
+    // strings are looked up in the table's heap, so only do that once
+    private final PSTPropertyMap<String> strings = new PSTPropertyMap<>(8);
 
     public static final int MAPI_TO = 1;
     public static final int MAPI_CC = 2;
     public static final int MAPI_BCC = 3;
 
-    PSTRecipient(final HashMap<Integer, PSTTable7CItem> recipientDetails) {
+    PSTRecipient(final PSTTable7C.RowCursor recipientDetails) {
         this.details = recipientDetails;
     }
 
@@ -93,12 +95,16 @@ public class PSTRecipient {
     }
 
     private String getString(final int id) {
-        if (this.details.containsKey(id)) {
-            final PSTTable7CItem item = this.details.get(id);
-            return item.getStringValue();
+        String value = this.strings.get(id);
+        if (value == null) {
+            try {
+                value = this.details.getString(id);
+            } catch (final PSTException | IOException e) {
+                value = "";
+            }
+            this.strings.put(id, value);
         }
-
-        return "";
+        return value;
     }
 
     /*
@@ -114,17 +120,23 @@ public class PSTRecipient {
      * return false;
      * }
      */
+    /**
+     * ints are held in the row itself, so reading one is cheap enough not to
+     * bother keeping it
+     */
     private int getInt(final int id) {
-        if (this.details.containsKey(id)) {
-            final PSTTable7CItem item = this.details.get(id);
-            if (item.entryValueType == 0x0003) {
-                return item.entryValueReference;
+        try {
+            final int type = this.details.getType(id);
+            if (type == 0x0003) {
+                return this.details.getInt(id);
             }
 
-            if (item.entryValueType == 0x0002) {
-                final short s = (short) item.entryValueReference;
+            if (type == 0x0002) {
+                final short s = (short) this.details.getInt(id);
                 return s;
             }
+        } catch (final PSTException e) {
+            // not there
         }
 
         return 0;
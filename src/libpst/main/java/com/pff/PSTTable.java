@@ -33,6 +33,7 @@ package libpst.main.java.com.pff; /**
  */
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 /**
@@ -49,7 +50,11 @@ class PSTTable {
     protected byte tableTypeByte;
     protected int hidUserRoot;
 
-    protected Long[] arrayBlocks = null;
+    protected long[] arrayBlocks = null;
+
+    // the allocation table (HN page map) of each heap block, absolute
+    // offsets. Parsed the first time a block is used
+    private int[][] heapPageMaps = null;
 
     // info from the b5 header
     protected int sizeOfItemKey;
@@ -200,6 +205,14 @@ class PSTTable {
         long seekAndReadLong(final long offset, final int length) throws IOException, PSTException {
             return this.in.seekAndReadLong(this.startOffset + offset, length);
         }
+
+        /**
+         * @return the node as a read only, little endian buffer, usually a
+         *         view of the block it is in rather than a copy
+         */
+        ByteBuffer getData() throws IOException {
+            return this.in.getSlice(this.startOffset, this.length());
+        }
     }
 
     protected NodeInfo getNodeInfo(final int hnid) throws PSTException, IOException {
@@ -233,7 +246,7 @@ class PSTTable {
         }
 
         final int whichBlock = (hnid >>> 16);
-        if (whichBlock > this.arrayBlocks.length) {
+        if (whichBlock >= this.arrayBlocks.length) {
             // Block doesn't exist!
             String err = String.format("getNodeInfo: block doesn't exist! hnid = 0x%08X\n", hnid);
             err += String.format("getNodeInfo: block doesn't exist! whichBlock = 0x%08X\n", whichBlock);
@@ -244,23 +257,47 @@ class PSTTable {
 
         // A normal node in a local heap
         final int index = (hnid & 0xFFFF) >> 5;
-        int blockOffset = 0;
-        if (whichBlock > 0) {
-            blockOffset = this.arrayBlocks[whichBlock - 1].intValue();
-        }
-        // Get offset of HN page map
-        int iHeapNodePageMap = (int) this.in.seekAndReadLong(blockOffset, 2) + blockOffset;
-        final int cAlloc = (int) this.in.seekAndReadLong(iHeapNodePageMap, 2);
-        if (index >= cAlloc + 1) {
+        final int[] pageMap = this.getHeapPageMap(whichBlock);
+        if (index == 0 || index >= pageMap.length) {
             throw new PSTException(String.format("getNodeInfo: node index doesn't exist! nid = 0x%08X\n", hnid));
             // return null;
         }
-        iHeapNodePageMap += (2 * index) + 2;
-        final int start = (int) this.in.seekAndReadLong(iHeapNodePageMap, 2) + blockOffset;
-        final int end = (int) this.in.seekAndReadLong(iHeapNodePageMap + 2, 2) + blockOffset;
 
-        final NodeInfo out = new NodeInfo(start, end, this.in);
+        final NodeInfo out = new NodeInfo(pageMap[index - 1], pageMap[index], this.in);
         return out;
     }
 
+    /**
+     * get the allocation table of a heap block, cAlloc + 1 offsets where
+     * allocation n runs from entry n - 1 to entry n
+     */
+    private int[] getHeapPageMap(final int whichBlock) throws PSTException, IOException {
+        if (this.heapPageMaps == null) {
+            this.heapPageMaps = new int[this.arrayBlocks.length][];
+        }
+        int[] pageMap = this.heapPageMaps[whichBlock];
+        if (pageMap != null) {
+            return pageMap;
+        }
+
+        int blockOffset = 0;
+        if (whichBlock > 0) {
+            blockOffset = (int) this.arrayBlocks[whichBlock - 1];
+        }
+        final ByteBuffer block = this.in.getSlice(blockOffset, (int) this.arrayBlocks[whichBlock] - blockOffset);
+        try {
+            // the page map offset is at the start of the block
+            final int iHeapNodePageMap = block.getShort(0) & 0xFFFF;
+            final int cAlloc = block.getShort(iHeapNodePageMap) & 0xFFFF;
+            pageMap = new int[cAlloc + 1];
+            for (int x = 0; x < pageMap.length; x++) {
+                pageMap[x] = (block.getShort(iHeapNodePageMap + 4 + (x * 2)) & 0xFFFF) + blockOffset;
+            }
+        } catch (final IndexOutOfBoundsException err) {
+            throw new PSTException(String.format("getNodeInfo: invalid page map in heap block %d", whichBlock));
+        }
+        this.heapPageMaps[whichBlock] = pageMap;
+        return pageMap;
+    }
+
 }
@@ -37,7 +37,10 @@ import java.io.IOException;
  * import java.io.UnsupportedEncodingException;
  * /
  **/
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
@@ -57,7 +60,9 @@ class PSTTable7C extends PSTTable {
     private int TCI_bm = 0;
     private NodeInfo rowNodeInfo = null;
     private int TCI_1b = 0;
-    private int overrideCol = -1;
+    // the columns getItems decodes when not asked for specific ones, null
+    // for all of them
+    private int[] defaultColumns = null;
 
     protected PSTTable7C(final PSTNodeInputStream in, final HashMap<Integer, PSTDescriptorItem> subNodeDescriptorItems)
         throws PSTException, java.io.IOException {
@@ -75,42 +80,42 @@ class PSTTable7C extends PSTTable {
 
         // TCINFO header is in the hidUserRoot node
         // byte[] tcHeaderNode = getNodeInfo(hidUserRoot);
-        final NodeInfo tcHeaderNode = this.getNodeInfo(this.hidUserRoot);
+        final ByteBuffer tcHeaderNode = this.getNodeInfo(this.hidUserRoot).getData();
         int offset = 0;
 
         // get the TCINFO header information
         // int cCols =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode, offset+1,
         // offset+2);
-        this.cCols = (int) tcHeaderNode.seekAndReadLong(offset + 1, 1);
+        this.cCols = tcHeaderNode.get(offset + 1) & 0xFF;
         @SuppressWarnings("unused")
         final
         // int TCI_4b =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode, offset+2,
         // offset+4);
-        int TCI_4b = (int) tcHeaderNode.seekAndReadLong(offset + 2, 2);
+        int TCI_4b = tcHeaderNode.getShort(offset + 2) & 0xFFFF;
         @SuppressWarnings("unused")
         final
         // int TCI_2b =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode, offset+4,
         // offset+6);
-        int TCI_2b = (int) tcHeaderNode.seekAndReadLong(offset + 4, 2);
+        int TCI_2b = tcHeaderNode.getShort(offset + 4) & 0xFFFF;
         // int TCI_1b =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode, offset+6,
         // offset+8);
-        this.TCI_1b = (int) tcHeaderNode.seekAndReadLong(offset + 6, 2);
+        this.TCI_1b = tcHeaderNode.getShort(offset + 6) & 0xFFFF;
         // int TCI_bm =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode, offset+8,
         // offset+10);
-        this.TCI_bm = (int) tcHeaderNode.seekAndReadLong(offset + 8, 2);
+        this.TCI_bm = tcHeaderNode.getShort(offset + 8) & 0xFFFF;
         // int hidRowIndex =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode,
         // offset+10, offset+14);
-        final int hidRowIndex = (int) tcHeaderNode.seekAndReadLong(offset + 10, 4);
+        final int hidRowIndex = tcHeaderNode.getInt(offset + 10);
         // int hnidRows =
         // (int)PSTObject.convertLittleEndianBytesToLong(tcHeaderNode,
         // offset+14, offset+18);// was 18
-        final int hnidRows = (int) tcHeaderNode.seekAndReadLong(offset + 14, 4);
+        final int hnidRows = tcHeaderNode.getInt(offset + 14);
         // 18..22 hidIndex - deprecated
 
         // 22... column descriptors
@@ -125,28 +130,25 @@ class PSTTable7C extends PSTTable {
                 // System.out.println("iBit: "+col+" "
                 // +columnDescriptors[col].iBit);
                 if (this.columnDescriptors[col].id == entityToExtract) {
-                    this.overrideCol = col;
+                    this.defaultColumns = new int[] { col };
                 }
                 offset += 8;
             }
         }
 
-        // if we are asking for a specific column, only get that!
-        if (this.overrideCol > -1) {
-            this.cCols = this.overrideCol + 1;
-        }
-
         // Read the key table
         /* System.out.printf("Key table:\n"); / **/
         this.keyMap = new HashMap<>();
         // byte[] keyTableInfo = getNodeInfo(hidRoot);
-        final NodeInfo keyTableInfo = this.getNodeInfo(this.hidRoot);
-        this.numberOfKeys = keyTableInfo.length() / (this.sizeOfItemKey + this.sizeOfItemValue);
+        final ByteBuffer keyTableInfo = this.getNodeInfo(this.hidRoot).getData();
+        this.numberOfKeys = keyTableInfo.remaining() / (this.sizeOfItemKey + this.sizeOfItemValue);
         offset = 0;
         for (int x = 0; x < this.numberOfKeys; x++) {
-            final int Context = (int) keyTableInfo.seekAndReadLong(offset, this.sizeOfItemKey);
+            final int Context = (int) PSTObject.convertLittleEndianBytesToLong(keyTableInfo, offset,
+                offset + this.sizeOfItemKey);
             offset += this.sizeOfItemKey;
-            final int RowIndex = (int) keyTableInfo.seekAndReadLong(offset, this.sizeOfItemValue);
+            final int RowIndex = (int) PSTObject.convertLittleEndianBytesToLong(keyTableInfo, offset,
+                offset + this.sizeOfItemValue);
             offset += this.sizeOfItemValue;
             this.keyMap.put(Context, RowIndex);
         }
@@ -179,14 +181,27 @@ class PSTTable7C extends PSTTable {
         return this.items;
     }
 
-    List<HashMap<Integer, PSTTable7CItem>> getItems(int startAtRecord, int numberOfRecordsToReturn)
+    List<HashMap<Integer, PSTTable7CItem>> getItems(final int startAtRecord, final int numberOfRecordsToReturn)
         throws PSTException, IOException {
+        return this.getItems(startAtRecord, numberOfRecordsToReturn, null);
+    }
+
+    /**
+     * get some rows, only decoding the given properties (columns).
+     * Cells for other columns aren't read at all, nor are their values looked
+     * up in the heap. The row id (0x67F2) is always included.
+     * 
+     * @param propertyTags
+     *            property ids of the columns wanted, null for the default
+     */
+    List<HashMap<Integer, PSTTable7CItem>> getItems(int startAtRecord, int numberOfRecordsToReturn,
+        final int[] propertyTags) throws PSTException, IOException {
         final List<HashMap<Integer, PSTTable7CItem>> itemList = new ArrayList<>();
+        final int[] columns = propertyTags == null ? this.defaultColumns : this.getColumns(propertyTags);
 
         // okay, work out the number of records we have
         final int numberOfBlocks = this.rowNodeInfo.length() / this.BLOCK_SIZE;
         final int numberOfRowsPerBlock = this.BLOCK_SIZE / this.TCI_bm;
-        final int blockPadding = this.BLOCK_SIZE - (numberOfRowsPerBlock * this.TCI_bm);
         this.numberOfDataSets = (numberOfBlocks * numberOfRowsPerBlock)
             + ((this.rowNodeInfo.length() % this.BLOCK_SIZE) / this.TCI_bm);
 
@@ -195,244 +210,457 @@ class PSTTable7C extends PSTTable {
             startAtRecord = 0;
         }
 
-        // repeat the reading process for every dataset
-        int currentValueArrayStart = ((startAtRecord / numberOfRowsPerBlock) * this.BLOCK_SIZE)
-            + ((startAtRecord % numberOfRowsPerBlock) * this.TCI_bm);
-
         if (numberOfRecordsToReturn > this.getRowCount() - startAtRecord) {
             numberOfRecordsToReturn = this.getRowCount() - startAtRecord;
         }
 
+        // the cursor works out where each row is, so we agree with it on
+        // the block padding
+        final RowCursor cursor = this.getRowCursor();
         int dataSetNumber = 0;
-        // while ( currentValueArrayStart + ((cCols+7)/8) + TCI_1b <=
-        // rowNodeInfo.length())
         for (int rowCounter = 0; rowCounter < numberOfRecordsToReturn; rowCounter++) {
-            final HashMap<Integer, PSTTable7CItem> currentItem = new HashMap<>();
-            // add on some padding for block boundries?
-            if (this.rowNodeInfo.in.getPSTFile().getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
-                if (currentValueArrayStart >= this.BLOCK_SIZE) {
-                    currentValueArrayStart = currentValueArrayStart + (4) * (currentValueArrayStart / this.BLOCK_SIZE);
-                }
-                if (this.rowNodeInfo.startOffset + currentValueArrayStart + this.TCI_1b > this.rowNodeInfo.in
-                    .length()) {
-                    continue;
-                }
-            } else {
-                if ((currentValueArrayStart % this.BLOCK_SIZE) > this.BLOCK_SIZE - this.TCI_bm) {
-                    // adjust!
-                    // currentValueArrayStart += 8176 - (currentValueArrayStart
-                    // % 8176);
-                    currentValueArrayStart += blockPadding;
-                    if (currentValueArrayStart + this.TCI_bm > this.rowNodeInfo.length()) {
-                        continue;
-                    }
-                }
+            if (!cursor.moveTo(startAtRecord + rowCounter)) {
+                continue;
+            }
+            try {
+                itemList.add(dataSetNumber, this.getRow(cursor.rowData, cursor.row, columns));
+            } catch (final IndexOutOfBoundsException err) {
+                throw new PSTException(
+                    "Unable to read row " + (startAtRecord + rowCounter) + " of table, past end of data");
             }
-            final byte[] bitmap = new byte[(this.cCols + 7) / 8];
-            // System.arraycopy(rowNodeInfo, currentValueArrayStart+TCI_1b,
-            // bitmap, 0, bitmap.length);
-            this.rowNodeInfo.in.seek(this.rowNodeInfo.startOffset + currentValueArrayStart + this.TCI_1b);
-            this.rowNodeInfo.in.readCompletely(bitmap);
+            dataSetNumber++;
+        }
 
-            // int id =
-            // (int)PSTObject.convertLittleEndianBytesToLong(rowNodeInfo,
-            // currentValueArrayStart, currentValueArrayStart+4);
-            final int id = (int) this.rowNodeInfo.seekAndReadLong(currentValueArrayStart, 4);
-
-            // Put into the item map as PidTagLtpRowId (0x67F2)
-            PSTTable7CItem item = new PSTTable7CItem();
-            item.itemIndex = -1;
-            item.entryValueType = 3;
-            item.entryType = 0x67F2;
-            item.entryValueReference = id;
+        // System.out.println(description);
+
+        return itemList;
+    }
+
+    /**
+     * get the part of the row matrix starting at a row, a block's worth at a
+     * time
+     */
+    private ByteBuffer getRowChunk(final int rowStart) throws IOException {
+        final int length = Math.min(Math.max(this.BLOCK_SIZE, this.TCI_bm), this.rowNodeInfo.length() - rowStart);
+        return this.rowNodeInfo.in.getSlice(this.rowNodeInfo.startOffset + rowStart, Math.max(0, length));
+    }
+
+    /**
+     * decode a single row
+     * 
+     * @param rowData
+     *            row matrix data
+     * @param row
+     *            where the row starts in rowData
+     */
+    private HashMap<Integer, PSTTable7CItem> getRow(final ByteBuffer rowData, final int row, final int[] columns)
+        throws PSTException, IOException {
+        final HashMap<Integer, PSTTable7CItem> currentItem = new HashMap<>();
+
+        // Put into the item map as PidTagLtpRowId (0x67F2)
+        PSTTable7CItem item = this.getRowIdItem(rowData.getInt(row));
+        currentItem.put(item.entryType, item);
+
+        final int numberOfColumns = columns == null ? this.cCols : columns.length;
+        for (int x = 0; x < numberOfColumns; ++x) {
+            item = this.getCell(rowData, row, columns == null ? x : columns[x]);
+            if (item != null) {
+                currentItem.put(item.entryType, item);
+            }
+            // description += item.toString()+"\n\n";
+        }
+        return currentItem;
+    }
+
+    /**
+     * @return the positions of the columns for some property ids, ids
+     *         without a column are left out
+     */
+    private int[] getColumns(final int[] propertyTags) {
+        final int[] columns = new int[propertyTags.length];
+        int numberOfColumns = 0;
+        for (final int propertyTag : propertyTags) {
+            final int col = this.findColumn(propertyTag);
+            if (col >= 0) {
+                columns[numberOfColumns++] = col;
+            }
+        }
+        return Arrays.copyOf(columns, numberOfColumns);
+    }
+
+    /**
+     * @return the position of the column for a property id, -1 if there
+     *         isn't one
+     */
+    private int findColumn(final int propertyTag) {
+        for (int col = 0; col < this.cCols; col++) {
+            if (this.columnDescriptors[col].id == propertyTag) {
+                return col;
+            }
+        }
+        return -1;
+    }
+
+    private PSTTable7CItem getRowIdItem(final int id) {
+        final PSTTable7CItem item = new PSTTable7CItem();
+        item.itemIndex = -1;
+        item.entryValueType = 3;
+        item.entryType = 0x67F2;
+        item.entryValueReference = id;
+        item.isExternalValueReference = true;
+        return item;
+    }
+
+    /**
+     * decode a single cell of a row
+     * 
+     * @return the cell, null if it isn't set for this row
+     */
+    private PSTTable7CItem getCell(final ByteBuffer rowData, final int row, final int col)
+        throws PSTException, IOException {
+        // Does this column exist for this row?
+        final int bitIndex = this.columnDescriptors[col].iBit / 8;
+        final int bit = this.columnDescriptors[col].iBit % 8;
+        if (bitIndex >= (this.cCols + 7) / 8 || (rowData.get(row + this.TCI_1b + bitIndex) & (1 << bit)) == 0) {
+            // Column doesn't exist
+            // System.out.printf("Col %d (0x%04X) not present\n", col,
+            // columnDescriptors[col].id); /**/
+
+            return null;
+        }
+
+        final PSTTable7CItem item = new PSTTable7CItem();
+        item.itemIndex = col;
+
+        item.entryValueType = this.columnDescriptors[col].type;
+        item.entryType = this.columnDescriptors[col].id;
+        item.entryValueReference = 0;
+
+        switch (this.columnDescriptors[col].cbData) {
+        case 1: // Single byte data
+            // item.entryValueReference =
+            // rowNodeInfo[currentValueArrayStart+columnDescriptors[col].ibData]
+            // & 0xFF;
+            item.entryValueReference = rowData.get(row + this.columnDescriptors[col].ibData) & 0xFF;
             item.isExternalValueReference = true;
-            currentItem.put(item.entryType, item);
+            /*
+             * System.out.printf("\tboolean: %s %s\n",
+             * PSTFile.getPropertyDescription(item.entryType,
+             * item.entryValueType),
+             * item.entryValueReference == 0 ? "false" : "true");
+             * /
+             **/
+            break;
+
+        case 2: // Two byte data
+            /*
+             * item.entryValueReference =
+             * (rowNodeInfo[currentValueArrayStart+columnDescriptors[col
+             * ].ibData] & 0xFF) |
+             * ((rowNodeInfo[currentValueArrayStart+columnDescriptors[
+             * col].ibData+1] & 0xFF) << 8);
+             */
+            item.entryValueReference = rowData.getShort(row + this.columnDescriptors[col].ibData) & 0xFFFF;
+            item.isExternalValueReference = true;
+            /*
+             * short i16 = (short)item.entryValueReference;
+             * System.out.printf("\tInteger16: %s %d\n",
+             * PSTFile.getPropertyDescription(item.entryType,
+             * item.entryValueType),
+             * i16);
+             * /
+             **/
+            break;
+
+        case 8: // 8 byte data
+            final ByteBuffer value = rowData.duplicate();
+            value.position(row + this.columnDescriptors[col].ibData);
+            value.limit(row + this.columnDescriptors[col].ibData + 8);
+            item.setData(value.slice().order(ByteOrder.LITTLE_ENDIAN));
+            /*
+             * System.out.printf("\tInteger64: %s\n",
+             * PSTFile.getPropertyDescription(item.entryType,
+             * item.entryValueType)); /
+             **/
+            break;
+
+        default:// Four byte data
+
+            /*
+             * if (numberOfIndexLevels > 0 ) {
+             * System.out.println("here");
+             * System.out.println(rowNodeInfo.length());
+             * PSTObject.printHexFormatted(rowNodeInfo, true);
+             * System.exit(0);
+             * }
+             */
+
+            // item.entryValueReference =
+            // (int)PSTObject.convertLittleEndianBytesToLong(rowNodeInfo,
+            // currentValueArrayStart+columnDescriptors[col].ibData,
+            // currentValueArrayStart+columnDescriptors[col].ibData+4);
+            item.entryValueReference = rowData.getInt(row + this.columnDescriptors[col].ibData);
+            if (this.columnDescriptors[col].type == 0x0003 || this.columnDescriptors[col].type == 0x0004
+                || this.columnDescriptors[col].type == 0x000A) {
+                // True 32bit data
+                item.isExternalValueReference = true;
+                /*
+                 * System.out.printf("\tInteger32: %s %d\n",
+                 * PSTFile.getPropertyDescription(item.entryType,
+                 * item.entryValueType),
+                 * item.entryValueReference); /
+                 **/
+                break;
+            }
+
+            // Variable length data so it's an hnid
+            if ((item.entryValueReference & 0x1F) != 0) {
+                // Some kind of external reference...
+                item.isExternalValueReference = true;
+                /*
+                 * System.out.printf("\tOther: %s 0x%08X\n",
+                 * PSTFile.getPropertyDescription(item.entryType,
+                 * item.entryValueType), item.entryValueReference); /
+                 **/
+                break;
+            }
 
-            int col = 0;
-            if (this.overrideCol > -1) {
-                col = this.overrideCol;
+            if (item.entryValueReference == 0) {
+                /*
+                 * System.out.printf("\tOther: %s 0 bytes\n",
+                 * PSTFile.getPropertyDescription(item.entryType,
+                 * item.entryValueType)); /
+                 **/
+                break;
+            } else {
+                final NodeInfo entryInfo = this.getNodeInfo(item.entryValueReference);
+                item.setData(entryInfo.getData());
             }
-            for (; col < this.cCols; ++col) {
-                // Does this column exist for this row?
-                final int bitIndex = this.columnDescriptors[col].iBit / 8;
-                final int bit = this.columnDescriptors[col].iBit % 8;
-                if (bitIndex >= bitmap.length || (bitmap[bitIndex] & (1 << bit)) == 0) {
-                    // Column doesn't exist
-                    // System.out.printf("Col %d (0x%04X) not present\n", col,
-                    // columnDescriptors[col].id); /**/
-
-                    continue;
+            /*
+             * if ( item.entryValueType != 0x001F ) {
+             * System.out.printf("\tOther: %s %d bytes\n",
+             * PSTFile.getPropertyDescription(item.entryType,
+             * item.entryValueType),
+             * item.data.length);
+             * } else {
+             * try {
+             * String s = new String(item.data, "UTF-16LE");
+             * System.out.printf("\tString: %s \"%s\"\n",
+             * PSTFile.getPropertyDescription(item.entryType,
+             * item.entryValueType),
+             * s);
+             * } catch (UnsupportedEncodingException e) {
+             * e.printStackTrace();
+             * }
+             * }
+             * /
+             **/
+            break;
+        }
+
+        return item;
+    }
+
+    /**
+     * get a cursor over the rows of this table, positioned before the first
+     * row
+     */
+    RowCursor getRowCursor() {
+        return new RowCursor();
+    }
+
+    /**
+     * Reads the cells of one row at a time straight out of the row matrix,
+     * without building a map of items for every row.
+     * Property ids are the column ids, 0x67F2 gives the row id.
+     */
+    class RowCursor {
+
+        private int rowIndex = -1;
+        private ByteBuffer rowData = null;
+        private int rowDataStart = 0;
+        private int row = -1;
+
+        /**
+         * @return the index of the current row, -1 before the first
+         */
+        int getRowIndex() {
+            return this.rowIndex;
+        }
+
+        /**
+         * move to the next row
+         * 
+         * @return false if there are no more rows
+         */
+        boolean next() throws PSTException, IOException {
+            return this.moveTo(this.rowIndex + 1);
+        }
+
+        /**
+         * move to a specific row
+         * 
+         * @return false if there is no such row
+         */
+        boolean moveTo(final int rowIndex) throws PSTException, IOException {
+            this.rowIndex = rowIndex;
+            this.row = -1;
+            if (rowIndex < 0 || rowIndex >= PSTTable7C.this.getRowCount()) {
+                return false;
+            }
+
+            final int rowStart = PSTTable7C.this.getRowStart(rowIndex);
+            if (PSTTable7C.this.rowNodeInfo.in.getPSTFile().getPSTFileType() == PSTFile.PST_TYPE_ANSI) {
+                if (PSTTable7C.this.rowNodeInfo.startOffset + rowStart + PSTTable7C.this.TCI_1b
+                    > PSTTable7C.this.rowNodeInfo.in.length()) {
+                    return false;
                 }
+            } else if (rowStart + PSTTable7C.this.TCI_bm > PSTTable7C.this.rowNodeInfo.length()) {
+                return false;
+            }
 
-                item = new PSTTable7CItem();
-                item.itemIndex = col;
-
-                item.entryValueType = this.columnDescriptors[col].type;
-                item.entryType = this.columnDescriptors[col].id;
-                item.entryValueReference = 0;
-
-                switch (this.columnDescriptors[col].cbData) {
-                case 1: // Single byte data
-                    // item.entryValueReference =
-                    // rowNodeInfo[currentValueArrayStart+columnDescriptors[col].ibData]
-                    // & 0xFF;
-                    item.entryValueReference = (int) this.rowNodeInfo
-                        .seekAndReadLong(currentValueArrayStart + this.columnDescriptors[col].ibData, 1) & 0xFF;
-                    item.isExternalValueReference = true;
-                    /*
-                     * System.out.printf("\tboolean: %s %s\n",
-                     * PSTFile.getPropertyDescription(item.entryType,
-                     * item.entryValueType),
-                     * item.entryValueReference == 0 ? "false" : "true");
-                     * /
-                     **/
-                    break;
-
-                case 2: // Two byte data
-                    /*
-                     * item.entryValueReference =
-                     * (rowNodeInfo[currentValueArrayStart+columnDescriptors[col
-                     * ].ibData] & 0xFF) |
-                     * ((rowNodeInfo[currentValueArrayStart+columnDescriptors[
-                     * col].ibData+1] & 0xFF) << 8);
-                     */
-                    item.entryValueReference = (int) this.rowNodeInfo
-                        .seekAndReadLong(currentValueArrayStart + this.columnDescriptors[col].ibData, 2) & 0xFFFF;
-                    item.isExternalValueReference = true;
-                    /*
-                     * short i16 = (short)item.entryValueReference;
-                     * System.out.printf("\tInteger16: %s %d\n",
-                     * PSTFile.getPropertyDescription(item.entryType,
-                     * item.entryValueType),
-                     * i16);
-                     * /
-                     **/
-                    break;
-
-                case 8: // 8 byte data
-                    item.data = new byte[8];
-                    // System.arraycopy(rowNodeInfo,
-                    // currentValueArrayStart+columnDescriptors[col].ibData,
-                    // item.data, 0, 8);
-                    this.rowNodeInfo.in.seek(
-                        this.rowNodeInfo.startOffset + currentValueArrayStart + this.columnDescriptors[col].ibData);
-                    this.rowNodeInfo.in.readCompletely(item.data);
-                    /*
-                     * System.out.printf("\tInteger64: %s\n",
-                     * PSTFile.getPropertyDescription(item.entryType,
-                     * item.entryValueType)); /
-                     **/
-                    break;
-
-                default:// Four byte data
-
-                    /*
-                     * if (numberOfIndexLevels > 0 ) {
-                     * System.out.println("here");
-                     * System.out.println(rowNodeInfo.length());
-                     * PSTObject.printHexFormatted(rowNodeInfo, true);
-                     * System.exit(0);
-                     * }
-                     */
-
-                    // item.entryValueReference =
-                    // (int)PSTObject.convertLittleEndianBytesToLong(rowNodeInfo,
-                    // currentValueArrayStart+columnDescriptors[col].ibData,
-                    // currentValueArrayStart+columnDescriptors[col].ibData+4);
-                    item.entryValueReference = (int) this.rowNodeInfo
-                        .seekAndReadLong(currentValueArrayStart + this.columnDescriptors[col].ibData, 4);
-                    if (this.columnDescriptors[col].type == 0x0003 || this.columnDescriptors[col].type == 0x0004
-                        || this.columnDescriptors[col].type == 0x000A) {
-                        // True 32bit data
-                        item.isExternalValueReference = true;
-                        /*
-                         * System.out.printf("\tInteger32: %s %d\n",
-                         * PSTFile.getPropertyDescription(item.entryType,
-                         * item.entryValueType),
-                         * item.entryValueReference); /
-                         **/
-                        break;
-                    }
-
-                    // Variable length data so it's an hnid
-                    if ((item.entryValueReference & 0x1F) != 0) {
-                        // Some kind of external reference...
-                        item.isExternalValueReference = true;
-                        /*
-                         * System.out.printf("\tOther: %s 0x%08X\n",
-                         * PSTFile.getPropertyDescription(item.entryType,
-                         * item.entryValueType), item.entryValueReference); /
-                         **/
-                        break;
-                    }
-
-                    if (item.entryValueReference == 0) {
-                        /*
-                         * System.out.printf("\tOther: %s 0 bytes\n",
-                         * PSTFile.getPropertyDescription(item.entryType,
-                         * item.entryValueType)); /
-                         **/
-                        item.data = new byte[0];
-                        break;
-                    } else {
-                        final NodeInfo entryInfo = this.getNodeInfo(item.entryValueReference);
-                        item.data = new byte[entryInfo.length()];
-                        // System.arraycopy(entryInfo, 0, item.data, 0,
-                        // item.data.length);
-                        entryInfo.in.seek(entryInfo.startOffset);
-                        entryInfo.in.readCompletely(item.data);
-                    }
-                    /*
-                     * if ( item.entryValueType != 0x001F ) {
-                     * System.out.printf("\tOther: %s %d bytes\n",
-                     * PSTFile.getPropertyDescription(item.entryType,
-                     * item.entryValueType),
-                     * item.data.length);
-                     * } else {
-                     * try {
-                     * String s = new String(item.data, "UTF-16LE");
-                     * System.out.printf("\tString: %s \"%s\"\n",
-                     * PSTFile.getPropertyDescription(item.entryType,
-                     * item.entryValueType),
-                     * s);
-                     * } catch (UnsupportedEncodingException e) {
-                     * e.printStackTrace();
-                     * }
-                     * }
-                     * /
-                     **/
-                    break;
+            // keep using the same block of the row matrix while we can
+            if (this.rowData == null || rowStart < this.rowDataStart
+                || rowStart + PSTTable7C.this.TCI_bm > this.rowDataStart + this.rowData.limit()) {
+                this.rowDataStart = rowStart;
+                this.rowData = PSTTable7C.this.getRowChunk(rowStart);
+            }
+            this.row = rowStart - this.rowDataStart;
+            return true;
+        }
+
+        private int getColumn(final int propId) throws PSTException {
+            if (this.row < 0) {
+                throw new PSTException("Row cursor is not on a row");
+            }
+            final int col = PSTTable7C.this.findColumn(propId);
+            if (col < 0) {
+                return -1;
+            }
+            final int bitIndex = PSTTable7C.this.columnDescriptors[col].iBit / 8;
+            final int bit = PSTTable7C.this.columnDescriptors[col].iBit % 8;
+            if (bitIndex >= (PSTTable7C.this.cCols + 7) / 8
+                || (this.rowData.get(this.row + PSTTable7C.this.TCI_1b + bitIndex) & (1 << bit)) == 0) {
+                // not set for this row
+                return -1;
+            }
+            return col;
+        }
+
+        /**
+         * @return true if the current row has a value for the property
+         */
+        boolean hasProperty(final int propId) throws PSTException {
+            return propId == 0x67F2 ? this.row >= 0 : this.getColumn(propId) >= 0;
+        }
+
+        /**
+         * @return the property type of the value, -1 if the row doesn't have
+         *         one
+         */
+        int getType(final int propId) throws PSTException {
+            if (propId == 0x67F2) {
+                return this.row >= 0 ? 3 : -1;
+            }
+            final int col = this.getColumn(propId);
+            return col < 0 ? -1 : PSTTable7C.this.columnDescriptors[col].type;
+        }
+
+        /**
+         * @return the value of a 1, 2 or 4 byte cell (for variable length
+         *         values this is the heap or subnode id), 0 if not set
+         */
+        int getInt(final int propId) throws PSTException {
+            if (propId == 0x67F2) {
+                if (this.row < 0) {
+                    throw new PSTException("Row cursor is not on a row");
                 }
+                return this.rowData.getInt(this.row);
+            }
+            final int col = this.getColumn(propId);
+            if (col < 0) {
+                return 0;
+            }
+            final ColumnDescriptor column = PSTTable7C.this.columnDescriptors[col];
+            switch (column.cbData) {
+            case 1:
+                return this.rowData.get(this.row + column.ibData) & 0xFF;
+            case 2:
+                return this.rowData.getShort(this.row + column.ibData) & 0xFFFF;
+            case 8:
+                return (int) this.rowData.getLong(this.row + column.ibData);
+            default:
+                return this.rowData.getInt(this.row + column.ibData);
+            }
+        }
 
-                currentItem.put(item.entryType, item);
+        /**
+         * @return the value of an 8 byte cell, or of a smaller one widened, 0
+         *         if not set
+         */
+        long getLong(final int propId) throws PSTException {
+            final int col = propId == 0x67F2 ? -1 : this.getColumn(propId);
+            if (col >= 0 && PSTTable7C.this.columnDescriptors[col].cbData == 8) {
+                return this.rowData.getLong(this.row + PSTTable7C.this.columnDescriptors[col].ibData);
+            }
+            return this.getInt(propId) & 0xFFFFFFFFL;
+        }
 
-                // description += item.toString()+"\n\n";
+        /**
+         * @return the value as an item, the same as getItems would give,
+         *         null if not set
+         */
+        PSTTable7CItem getItem(final int propId) throws PSTException, IOException {
+            if (propId == 0x67F2) {
+                return PSTTable7C.this.getRowIdItem(this.getInt(propId));
             }
-            itemList.add(dataSetNumber, currentItem);
-            dataSetNumber++;
-            currentValueArrayStart += this.TCI_bm;
+            final int col = this.getColumn(propId);
+            if (col < 0) {
+                return null;
+            }
+            return PSTTable7C.this.getCell(this.rowData, this.row, col);
         }
 
-        // System.out.println(description);
+        /**
+         * @return the bytes of a binary, string or 8 byte value, null if not
+         *         set
+         */
+        byte[] getBytes(final int propId) throws PSTException, IOException {
+            final PSTTable7CItem item = this.getItem(propId);
+            return item == null ? null : item.getData();
+        }
 
-        return itemList;
+        /**
+         * @return the value as a string, "" if not set
+         */
+        String getString(final int propId) throws PSTException, IOException {
+            final PSTTable7CItem item = this.getItem(propId);
+            return item == null ? "" : item.getStringValue();
+        }
+    }
+
+    /**
+     * @return where a row starts in the row matrix
+     */
+    private int getRowStart(final int rowIndex) {
+        final int numberOfRowsPerBlock = this.BLOCK_SIZE / this.TCI_bm;
+        int rowStart = ((rowIndex / numberOfRowsPerBlock) * this.BLOCK_SIZE)
+            + ((rowIndex % numberOfRowsPerBlock) * this.TCI_bm);
+        if (this.rowNodeInfo.in.getPSTFile().getPSTFileType() == PSTFile.PST_TYPE_ANSI
+            && rowStart >= this.BLOCK_SIZE) {
+            // add on some padding for block boundries
+            rowStart += 4 * (rowStart / this.BLOCK_SIZE);
+        }
+        return rowStart;
     }
 
     class ColumnDescriptor {
-        ColumnDescriptor(final NodeInfo nodeInfo, final int offset) throws PSTException, IOException {
-            // type = (int)(PSTObject.convertLittleEndianBytesToLong(data,
-            // offset, offset+2) & 0xFFFF);
-            this.type = ((int) nodeInfo.seekAndReadLong(offset, 2) & 0xFFFF);
-            // id = (int)(PSTObject.convertLittleEndianBytesToLong(data,
-            // offset+2, offset+4) & 0xFFFF);
-            this.id = (int) (nodeInfo.seekAndReadLong(offset + 2, 2) & 0xFFFF);
-            // ibData = (int)(PSTObject.convertLittleEndianBytesToLong(data,
-            // offset+4, offset+6) & 0xFFFF);
-            this.ibData = (int) (nodeInfo.seekAndReadLong(offset + 4, 2) & 0xFFFF);
-            // cbData = (int)data[offset+6] & 0xFF;
-            this.cbData = nodeInfo.in.read() & 0xFF;
-            // iBit = (int)data[offset+7] & 0xFF;
-            this.iBit = nodeInfo.in.read() & 0xFF;
+        ColumnDescriptor(final ByteBuffer data, final int offset) {
+            this.type = data.getShort(offset) & 0xFFFF;
+            this.id = data.getShort(offset + 2) & 0xFFFF;
+            this.ibData = data.getShort(offset + 4) & 0xFFFF;
+            this.cbData = data.get(offset + 6) & 0xFF;
+            this.iBit = data.get(offset + 7) & 0xFF;
         }
 
         int type;
@@ -32,6 +32,7 @@ package libpst.main.java.com.pff; /**
  *
  */
 
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 
 /**
@@ -42,7 +43,7 @@ import java.util.HashMap;
  */
 class PSTTableBC extends PSTTable {
 
-    private final HashMap<Integer, PSTTableBCItem> items = new HashMap<>();
+    private final PSTPropertyMap<PSTTableBCItem> items;
 
     private final StringBuilder descBuffer = new StringBuilder();
     private boolean isDescNotYetInitiated = false;
@@ -58,17 +59,15 @@ class PSTTableBC extends PSTTable {
 
         // go through each of the entries.
         // byte[] keyTableInfo = getNodeInfo(hidRoot);
-        final NodeInfo keyTableInfoNodeInfo = this.getNodeInfo(this.hidRoot);
-        final byte[] keyTableInfo = new byte[keyTableInfoNodeInfo.length()];
-        keyTableInfoNodeInfo.in.seek(keyTableInfoNodeInfo.startOffset);
-        keyTableInfoNodeInfo.in.readCompletely(keyTableInfo);
+        final ByteBuffer keyTableInfo = this.getNodeInfo(this.hidRoot).getData();
 
         // PSTObject.printHexFormatted(keyTableInfo, true);
         // System.out.println(in.length());
         // System.exit(0);
-        this.numberOfKeys = keyTableInfo.length / (this.sizeOfItemKey + this.sizeOfItemValue);
+        this.numberOfKeys = keyTableInfo.remaining() / (this.sizeOfItemKey + this.sizeOfItemValue);
 
         this.descBuffer.append("Number of entries: " + this.numberOfKeys + "\n");
+        this.items = new PSTPropertyMap<>(this.numberOfKeys);
 
         // Read the key table
         int offset = 0;
@@ -76,12 +75,11 @@ class PSTTableBC extends PSTTable {
 
             final PSTTableBCItem item = new PSTTableBCItem();
             item.itemIndex = x;
-            item.entryType = (int) PSTObject.convertLittleEndianBytesToLong(keyTableInfo, offset + 0, offset + 2);
+            item.entryType = keyTableInfo.getShort(offset) & 0xFFFF;
             // item.entryType =(int)in.seekAndReadLong(offset, 2);
-            item.entryValueType = (int) PSTObject.convertLittleEndianBytesToLong(keyTableInfo, offset + 2, offset + 4);
+            item.entryValueType = keyTableInfo.getShort(offset + 2) & 0xFFFF;
             // item.entryValueType = (int)in.seekAndReadLong(offset+2, 2);
-            item.entryValueReference = (int) PSTObject.convertLittleEndianBytesToLong(keyTableInfo, offset + 4,
-                offset + 8);
+            item.entryValueReference = keyTableInfo.getInt(offset + 4);
             // item.entryValueReference = (int)in.seekAndReadLong(offset+4, 4);
 
             // Data is in entryValueReference for all types <= 4 bytes long
@@ -120,8 +118,7 @@ class PSTTableBC extends PSTTable {
                 item.isExternalValueReference = true; // Assume not
                 // System.out.println(item.entryValueReference);
                 // byte[] nodeInfo = getNodeInfo(item.entryValueReference);
-                final NodeInfo nodeInfoNodeInfo = this.getNodeInfo(item.entryValueReference);
-                if (nodeInfoNodeInfo == null) {
+                if ((item.entryValueReference & 0x1F) != 0) {
                     // It's an external reference that we don't deal with here.
                     /*
                      * System.out.printf("%s: %shid 0x%08X\n",
@@ -133,13 +130,17 @@ class PSTTableBC extends PSTTable {
                      * /
                      **/
                 } else {
-                    // Make a copy of the data
-                    // item.data = new
-                    // byte[nodeInfo.endOffset-nodeInfo.startOffset];
-                    final byte[] nodeInfo = new byte[nodeInfoNodeInfo.length()];
-                    nodeInfoNodeInfo.in.seek(nodeInfoNodeInfo.startOffset);
-                    nodeInfoNodeInfo.in.readCompletely(nodeInfo);
-                    item.data = nodeInfo; // should be new array, so just use it
+                    // looked up in the heap when first asked for, 0 is an
+                    // empty value. Check it's in the heap at all now so a bad
+                    // table still fails here
+                    if (item.entryValueReference != 0) {
+                        if ((item.entryValueReference >>> 16) >= this.arrayBlocks.length) {
+                            throw new PSTException(String.format(
+                                "unable to create PSTTableBC, heap id 0x%08X of property 0x%04X is past the last block",
+                                item.entryValueReference, item.entryType));
+                        }
+                        item.setDataReference(this);
+                    }
                     // System.arraycopy(nodeInfo.data, nodeInfo.startOffset,
                     // item.data, 0, item.data.length);
                     item.isExternalValueReference = false;
@@ -187,7 +188,7 @@ class PSTTableBC extends PSTTable {
      * 
      * @return
      */
-    public HashMap<Integer, PSTTableBCItem> getItems() {
+    public PSTPropertyMap<PSTTableBCItem> getItems() {
         return this.items;
     }
 
@@ -197,8 +198,8 @@ class PSTTableBC extends PSTTable {
         if (this.isDescNotYetInitiated) {
             this.isDescNotYetInitiated = false;
 
-            for (final Integer curItem : this.items.keySet()) {
-                this.descBuffer.append(this.items.get(curItem).toString() + "\n\n");
+            for (int x = 0; x < this.items.size(); x++) {
+                this.descBuffer.append(this.items.valueAt(x).toString() + "\n\n");
             }
             // description += item.toString()+"\n\n";
         }
@@ -32,6 +32,9 @@ package libpst.main.java.com.pff; /**
  *
  */
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
 /**
  * Items within the BC Table
  * 
@@ -39,6 +42,35 @@ package libpst.main.java.com.pff; /**
  */
 class PSTTableBCItem extends PSTTableItem {
 
+    // the table to look the value up in, until it has been
+    private PSTTableBC table = null;
+
+    /**
+     * leave the value in the heap until it's asked for
+     */
+    void setDataReference(final PSTTableBC table) {
+        this.table = table;
+    }
+
+    /**
+     * @throws IllegalStateException
+     *             if the value can't be read from the heap (e.g. the file has
+     *             been closed), the data getters can't throw anything checked
+     */
+    @Override
+    ByteBuffer getDataBuffer() {
+        if (this.table != null) {
+            try {
+                this.setData(this.table.getNodeInfo(this.entryValueReference).getData());
+            } catch (final PSTException | IOException e) {
+                throw new IllegalStateException(
+                    String.format("Unable to read value of property 0x%04X", this.entryType), e);
+            }
+            this.table = null;
+        }
+        return super.getDataBuffer();
+    }
+
     @Override
     public String toString() {
         return "Table Item: " + super.toString() + "\n";
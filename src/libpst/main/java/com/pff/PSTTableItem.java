@@ -33,6 +33,7 @@ package libpst.main.java.com.pff; /**
  */
 
 import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -54,12 +55,53 @@ class PSTTableItem {
     public int entryType = 0;
     public int entryValueType = 0;
     public int entryValueReference = 0;
-    public byte[] data = new byte[0];
     public boolean isExternalValueReference = false;
 
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    // the value, a read only view of the node it lives in.
+    // Only copied into an array when someone asks for one
+    private ByteBuffer dataBuffer = EMPTY;
+    private byte[] data = null;
+
+    void setData(final ByteBuffer dataBuffer) {
+        this.dataBuffer = dataBuffer;
+        this.data = null;
+    }
+
+    void setData(final byte[] data) {
+        this.dataBuffer = ByteBuffer.wrap(data).asReadOnlyBuffer();
+        this.data = data;
+    }
+
+    /**
+     * @return the value as a view of the node it lives in
+     */
+    ByteBuffer getDataBuffer() {
+        return this.dataBuffer;
+    }
+
+    /**
+     * @return the value as an array, copied out of the node the first time
+     *         it is asked for
+     */
+    public byte[] getData() {
+        if (this.data == null) {
+            final ByteBuffer dataBuffer = this.getDataBuffer();
+            this.data = new byte[dataBuffer.remaining()];
+            dataBuffer.duplicate().get(this.data);
+        }
+        return this.data;
+    }
+
+    public int getDataLength() {
+        return this.getDataBuffer().remaining();
+    }
+
     public long getLongValue() {
-        if (this.data.length > 0) {
-            return PSTObject.convertLittleEndianBytesToLong(this.data);
+        final ByteBuffer dataBuffer = this.getDataBuffer();
+        if (dataBuffer.remaining() > 0) {
+            return PSTObject.convertLittleEndianBytesToLong(dataBuffer, dataBuffer.position(), dataBuffer.limit());
         }
         return -1;
     }
@@ -68,6 +110,51 @@ class PSTTableItem {
         return this.getStringValue(this.entryValueType);
     }
 
+    /**
+     * @return the value as the java type matching its property type, byte[]
+     *         for types we don't convert, or null if the value isn't held in
+     *         the table (a subnode reference)
+     */
+    Object getValue() {
+        final ByteBuffer dataBuffer = this.getDataBuffer();
+        switch (this.entryValueType) {
+        case 0x0002:
+            return Integer.valueOf((short) this.entryValueReference);
+        case 0x0003:
+        case 0x000A:
+            return Integer.valueOf(this.entryValueReference);
+        case 0x000B:
+            return Boolean.valueOf(this.entryValueReference != 0);
+        case 0x0004:
+            return Float.valueOf(Float.intBitsToFloat(this.entryValueReference));
+        case 0x0005:
+            if (dataBuffer.remaining() < 8) {
+                return null;
+            }
+            return Double.valueOf(Double.longBitsToDouble(this.getLongValue()));
+        case 0x0014:
+            if (dataBuffer.remaining() < 8) {
+                return null;
+            }
+            return Long.valueOf(this.getLongValue());
+        case 0x0040:
+            if (dataBuffer.remaining() < 8) {
+                return null;
+            }
+            final int position = dataBuffer.position();
+            return PSTObject.filetimeToDate(dataBuffer.getInt(position + 4), dataBuffer.getInt(position));
+        default:
+            break;
+        }
+        if (this.isExternalValueReference) {
+            return null;
+        }
+        if (this.entryValueType == VALUE_TYPE_PT_UNICODE || this.entryValueType == VALUE_TYPE_PT_STRING8) {
+            return this.getStringValue();
+        }
+        return this.getData();
+    }
+
     /**
      * get a string value of the data
      * 
@@ -83,10 +170,10 @@ class PSTTableItem {
                 if (this.isExternalValueReference) {
                     return "External string reference!";
                 }
-                return new String(this.data, "UTF-16LE").trim();
+                return new String(this.getData(), "UTF-16LE").trim();
             } catch (final UnsupportedEncodingException e) {
 
-                System.err.println("Error decoding string: " + this.data.toString());
+                System.err.println("Error decoding string: " + this.getData().toString());
                 return "";
             }
         }
@@ -94,7 +181,7 @@ class PSTTableItem {
         if (stringType == VALUE_TYPE_PT_STRING8) {
             // System.out.println("Warning! decoding string8 without charset:
             // "+this.entryType + " - "+ Integer.toHexString(this.entryType));
-            return new String(this.data, Charset.forName("UTF-8")).trim();
+            return new String(this.getData(), Charset.forName("UTF-8")).trim();
         }
 
         final StringBuffer outputBuffer = new StringBuffer();
@@ -112,7 +199,7 @@ class PSTTableItem {
         {
             // we are not a normal string, give a hexish sort of output
             final StringBuffer hexOut = new StringBuffer();
-            for (final byte element : this.data) {
+            for (final byte element : this.getData()) {
                 final int valueChar = element & 0xff;
                 if (Character.isLetterOrDigit((char) valueChar)) {
                     outputBuffer.append((char) valueChar);
@@ -151,21 +238,18 @@ class PSTTableItem {
 
         if (this.entryValueType == 0x0005 || this.entryValueType == 0x0014) {
             // 64bit data
-            if (this.data == null) {
-                return ret + "no data";
-            }
-            if (this.data.length == 8) {
-                final long l = PSTObject.convertLittleEndianBytesToLong(this.data, 0, 8);
+            if (this.getDataLength() == 8) {
+                final long l = this.getLongValue();
                 return String.format("%s0x%016X (%d)", ret, l, l);
             } else {
-                return String.format("%s invalid data length: %d", ret, this.data.length);
+                return String.format("%s invalid data length: %d", ret, this.getDataLength());
             }
         }
 
         if (this.entryValueType == 0x0040) {
             // It's a date...
-            final int high = (int) PSTObject.convertLittleEndianBytesToLong(this.data, 4, 8);
-            final int low = (int) PSTObject.convertLittleEndianBytesToLong(this.data, 0, 4);
+            final int high = (int) PSTObject.convertLittleEndianBytesToLong(this.getData(), 4, 8);
+            final int low = (int) PSTObject.convertLittleEndianBytesToLong(this.getData(), 0, 4);
 
             final Date d = PSTObject.filetimeToDate(high, low);
             this.dateFormatter.setTimeZone(utcTimeZone);
@@ -176,9 +260,9 @@ class PSTTableItem {
             // Unicode string
             String s;
             try {
-                s = new String(this.data, "UTF-16LE");
+                s = new String(this.getData(), "UTF-16LE");
             } catch (final UnsupportedEncodingException e) {
-                System.err.println("Error decoding string: " + this.data.toString());
+                System.err.println("Error decoding string: " + this.getData().toString());
                 s = "";
             }
 